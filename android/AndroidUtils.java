@@ -1,20 +1,12 @@
 package com.portalp.utils;
 
-import static android.graphics.Color.BLACK;
-import static android.graphics.Color.WHITE;
-
 import android.annotation.SuppressLint;
 import android.annotation.TargetApi;
 import android.app.Activity;
 import android.content.Context;
 import android.content.ContextWrapper;
-import android.content.pm.PackageManager;
-import android.content.res.Resources;
-import android.graphics.Bitmap;
-import android.graphics.Color;
+import android.graphics.ColorFilter;
 import android.graphics.Point;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffColorFilter;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Build;
@@ -23,28 +15,17 @@ import android.os.Looper;
 import android.os.PowerManager;
 import android.provider.Settings;
 import android.text.InputFilter;
-import android.text.Spanned;
-import android.util.DisplayMetrics;
 import android.util.Log;
-import android.view.Display;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewParent;
-import android.view.WindowManager;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
-import com.google.firebase.crashlytics.buildtools.reloc.javax.annotation.Nonnull;
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.MultiFormatWriter;
-import com.google.zxing.WriterException;
-import com.google.zxing.common.BitMatrix;
-
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
@@ -55,8 +36,6 @@ import java.io.InputStreamReader;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.security.SecureRandom;
-import java.security.cert.X509Certificate;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
@@ -67,14 +46,10 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
 
 /**
  * Helper class offering static util methods.
@@ -95,7 +70,8 @@ public class AndroidUtils {
     }
 
     /**
-     * Indicates whether the user has granted the given permissions to the application.
+     * Indicates whether the user has granted the given permissions to the application.<br/>
+     * Answered from the {@link PermissionStateService} cache of the granted permissions, the other ones being checked live.
      *
      * @param context     the {@link Context}
      * @param permissions the {@link String}[] permissions
@@ -104,11 +80,7 @@ public class AndroidUtils {
      */
     public static boolean hasPermissions(Context context, String[] permissions) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && context != null && permissions != null) {
-            for (String permission : permissions) {
-                if (ActivityCompat.checkSelfPermission(context, permission) != PackageManager.PERMISSION_GRANTED) {
-                    return false;
-                }
-            }
+            return PermissionStateService.getInstance(context).hasPermissions(permissions);
         }
         return true;
     }
@@ -149,32 +121,16 @@ public class AndroidUtils {
     }
 
     /**
-     * Ignore SSL errors when using Web Services. Dangerous, only use for debug.
+     * Ignore SSL errors when using Web Services. Dangerous, only use for debug.<br/>
+     * Installs the {@link HttpClientFactory#getTrustAll()} configuration globally: prefer opening connections with {@link HttpClientFactory#open(java.net.URL)}.
      */
     public static void trustAllSSLCerts() {
         try {
-            TrustManager[] trustAllCerts = new TrustManager[]{
-                    new X509TrustManager() {
-                        public X509Certificate[] getAcceptedIssuers() {
-                            X509Certificate[] myTrustedAnchors = new X509Certificate[0];
-                            return myTrustedAnchors;
-                        }
-
-                        @Override
-                        public void checkClientTrusted(X509Certificate[] certs, String authType) {
-                        }
-
-                        @Override
-                        public void checkServerTrusted(X509Certificate[] certs, String authType) {
-                        }
-                    }
-            };
-
-            SSLContext sc = SSLContext.getInstance("SSL");
-            sc.init(null, trustAllCerts, new SecureRandom());
-            HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
-            HttpsURLConnection.setDefaultHostnameVerifier((arg0, arg1) -> true);
-        } catch (Exception e) {
+            final HttpClientFactory factory = HttpClientFactory.getTrustAll();
+            HttpsURLConnection.setDefaultSSLSocketFactory(factory.getSocketFactory());
+            HttpsURLConnection.setDefaultHostnameVerifier(factory.getHostnameVerifier());
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "trustAllSSLCerts() failed: " + e);
         }
     }
     //endregion
@@ -192,25 +148,21 @@ public class AndroidUtils {
     }
 
     public static int getNavBarHeight(Context context) {
-        int height = 0;
-        Resources resources = context.getResources();
-        int resourceId = resources.getIdentifier("navigation_bar_height", "dimen", "android");
-        if (resourceId > 0) {
-            height = resources.getDimensionPixelSize(resourceId);
-        }
-        return height;
+        return getNavigationBarHeight(context);
     }
 
+    /**
+     * @see DisplayMetricsProvider#getStatusBarHeight()
+     */
     public static int getStatusBarHeight(Context context) {
-        Resources resources = context.getResources();
-        int resourceId = resources.getIdentifier("status_bar_height", "dimen", "android");
-        return (resourceId > 0) ? resources.getDimensionPixelSize(resourceId) : 0;
+        return DisplayMetricsProvider.getInstance(context).getStatusBarHeight();
     }
 
+    /**
+     * @see DisplayMetricsProvider#getNavigationBarHeight()
+     */
     public static int getNavigationBarHeight(Context context) {
-        Resources resources = context.getResources();
-        int resourceId = resources.getIdentifier("navigation_bar_height", "dimen", "android");
-        return (resourceId > 0) ? resources.getDimensionPixelSize(resourceId) : 0;
+        return DisplayMetricsProvider.getInstance(context).getNavigationBarHeight();
     }
 
     /**
@@ -251,51 +203,41 @@ public class AndroidUtils {
         }
     }
 
+    /**
+     * @see DisplayMetricsProvider#getDisplayDimensions()
+     */
     @NonNull
     public static Point getDisplayDimensions(Context context) {
-        WindowManager wm = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
-        Display display = wm.getDefaultDisplay();
-
-        DisplayMetrics metrics = new DisplayMetrics();
-        display.getMetrics(metrics);
-        int screenWidth = metrics.widthPixels;
-        int screenHeight = metrics.heightPixels;
-
-        // find out if status bar has already been subtracted from screenHeight
-        display.getRealMetrics(metrics);
-        int physicalHeight = metrics.heightPixels;
-        int statusBarHeight = getStatusBarHeight(context);
-        int navigationBarHeight = getNavigationBarHeight(context);
-        int heightDelta = physicalHeight - screenHeight;
-        if (heightDelta == 0 || heightDelta == navigationBarHeight) {
-            screenHeight -= statusBarHeight;
-        }
-
-        return new Point(screenWidth, screenHeight);
+        return DisplayMetricsProvider.getInstance(context).getDisplayDimensions();
     }
 
     /**
-     * Converts dp to px dimensions.
+     * Converts dp to px dimensions.<br/>
+     * For float precision and bulk conversions, see {@link DisplayMetricsProvider}.
      *
      * @param dp int DensityPixel
      * @return int Pixel
      */
     public static int dpToPx(int dp) {
-        return (int) (dp * Resources.getSystem().getDisplayMetrics().density);
+        return (int) (dp * DisplayMetricsProvider.getSystemDensity());
     }
 
     /**
-     * Converts px to dp dimensions.
+     * Converts px to dp dimensions.<br/>
+     * For float precision and bulk conversions, see {@link DisplayMetricsProvider}.
      *
      * @param px int Pixel
      * @return int DensityPixel
      */
     public static int pxToDp(int px) {
-        return (int) (px / Resources.getSystem().getDisplayMetrics().density);
+        return (int) (px / DisplayMetricsProvider.getSystemDensity());
     }
 
+    /**
+     * @see DrawableStyleCache#getDrawable(Context, int)
+     */
     public static Drawable getDrawable(Context context, int drawableResId) {
-        return context.getDrawable(drawableResId);
+        return DrawableStyleCache.getInstance(context).getDrawable(context, drawableResId);
     }
 
     /**
@@ -304,20 +246,22 @@ public class AndroidUtils {
      * Honeycomb's ActionBar.
      *
      * @return a mutated version of the given drawable with a color filter applied.
+     * @see DrawableStyleCache#getGrayScaleDrawable(Context, int) to avoid mutating a drawable loaded from resources on each call
      */
     public static Drawable convertDrawableToGrayScale(Drawable drawable) {
         if (drawable == null)
             return null;
 
         Drawable res = drawable.mutate();
-        res.setColorFilter(Color.GRAY, PorterDuff.Mode.SRC_IN);
+        res.setColorFilter(DrawableStyleCache.GRAYSCALE_FILTER);
         return res;
     }
 
     public static void setTextViewDrawableColor(TextView textView, int color) {
+        final ColorFilter filter = DrawableStyleCache.getInstance(textView.getContext()).getTintFilter(ContextCompat.getColor(textView.getContext(), color));
         for (Drawable drawable : textView.getCompoundDrawables()) {
             if (drawable != null) {
-                drawable.setColorFilter(new PorterDuffColorFilter(ContextCompat.getColor(textView.getContext(), color), PorterDuff.Mode.SRC_IN));
+                drawable.setColorFilter(filter);
             }
         }
     }
@@ -336,18 +280,13 @@ public class AndroidUtils {
     public static final String DIRECTORY_LOGS = "/logs"; // must be the same in res/xml/provider_paths.xml
     public static final String FORBIDDEN_CHARS_IN_FILENAME = "?:\"*|/\\<>";
 
-    public static InputFilter filterFileNameForbiddenChars = new InputFilter() {
-        public CharSequence filter(CharSequence source, int start, int end, Spanned dest, int dstart, int dend) {
-            if (source.length() < 1) {
-                return null;
-            }
-            char last = source.charAt(source.length() - 1);
-            if (FORBIDDEN_CHARS_IN_FILENAME.indexOf(last) > -1) {
-                return source.subSequence(0, source.length() - 1);
-            }
-            return null;
-        }
-    };
+    private static final UtilsMetrics.Timer WRITE_FILE_TIMER = UtilsMetrics.timer("AndroidUtils.writeFile");
+    private static final UtilsMetrics.Timer READ_FILE_TIMER = UtilsMetrics.timer("AndroidUtils.readFile");
+
+    /**
+     * Removes the {@link #FORBIDDEN_CHARS_IN_FILENAME} from the whole input, see {@link FileNameSanitizer}.
+     */
+    public static InputFilter filterFileNameForbiddenChars = new FileNameSanitizer();
 
     // Checks if a volume containing external storage is available
     // for read and write.
@@ -362,6 +301,7 @@ public class AndroidUtils {
     }
 
     public static String computeFileNameWithExt(String fileName, @Nullable String extension) {
+        fileName = FileNameSanitizer.sanitize(fileName);
         String fileNameWithExt = fileName;
         if (extension != null && !extension.isEmpty()) {
             if (!extension.startsWith(".")) {
@@ -420,6 +360,7 @@ public class AndroidUtils {
     }
 
     public static File writeFile(Context context, MyStorage where, String dirName, String fileName, @Nullable String extension, boolean append, String data) {
+        final long start = WRITE_FILE_TIMER.start();
         final String fileNameWithExt = computeFileNameWithExt(fileName, extension);
         try {
             final File rootDir = where.getDir(context);
@@ -437,6 +378,8 @@ public class AndroidUtils {
         } catch (NullPointerException | IOException e) {
             Log.e(TAG, "writeFile() on " + where + " failed: " + e);
             return null;
+        } finally {
+            WRITE_FILE_TIMER.stop(start);
         }
     }
 
@@ -458,6 +401,7 @@ public class AndroidUtils {
     }
 
     public static String readFile(File file) {
+        final long start = READ_FILE_TIMER.start();
         StringBuilder text = new StringBuilder();
         try {
             BufferedReader reader = new BufferedReader(new FileReader(file));
@@ -468,6 +412,8 @@ public class AndroidUtils {
             reader.close();
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            READ_FILE_TIMER.stop(start);
         }
         return text.toString();
     }
@@ -496,28 +442,15 @@ public class AndroidUtils {
     //endregion
 
     //region Android Tests
-    private static AtomicBoolean mIsRunningTest;
 
     /**
-     * Indicates whether the current RUN is an Espresso test.
+     * Indicates whether the current RUN is an Espresso test (AndroidX or legacy support library).<br/>
+     * Probed once, see {@link TestEnvironment}.
      *
      * @return <b>true</b> if it is an Espresso test
      */
-    public static synchronized boolean isRunningEspressoTest() {
-        if (null == mIsRunningTest) {
-            boolean istest;
-
-            try {
-                Class.forName("android.support.test.espresso.Espresso");
-                istest = true;
-            } catch (ClassNotFoundException e) {
-                istest = false;
-            }
-
-            mIsRunningTest = new AtomicBoolean(istest);
-        }
-
-        return mIsRunningTest.get();
+    public static boolean isRunningEspressoTest() {
+        return TestEnvironment.isEspresso();
     }
     //endregion
 }
@@ -0,0 +1,236 @@
+package com.portalp.technician.model.utils;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.NotificationCompat;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.ForegroundInfo;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.OutOfQuotaPolicy;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.portalp.com_library.model.settings.SuperEnums;
+import com.portalp.com_library.user.User;
+import com.portalp.technician.PortalpApplication;
+import com.portalp.technician.web_services.DoorConfigOutbox;
+import com.portalp.technician.web_services.WebServicesHelper;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Expedited {@link Worker} running the boot sync pipeline, off the main thread and outside of any {@link android.content.BroadcastReceiver} lifecycle:
+ * <ol>
+ * <li>loads the user from the DB,</li>
+ * <li>refreshes the token once,</li>
+ * <li>then fetches the licences and uploads the pending door configs concurrently: the {@link DoorConfigOutbox} batches, and the configs still
+ * saved by the legacy producers through {@link WebServicesHelper#postPendingDoorConfigs(User)}.</li>
+ * </ol>
+ * The duration of each stage is logged and returned in the output {@link Data}.
+ * <p>
+ * Also used for the periodic refreshes and the retries. Only the licences stage goes through the {@link LicenceRefreshScheduler}, so that overlapping
+ * licence refreshes are coalesced while the door configs are still uploaded on every run.
+ */
+public class BootSyncWorker extends Worker {
+
+    private static final String TAG = BootSyncWorker.class.getSimpleName();
+
+    private static final String UNIQUE_WORK_NAME = "BOOT_SYNC";
+    private static final long STAGE_TIMEOUT_S = 60;
+    private static final long UPLOAD_TIMEOUT_S = 5 * 60;
+
+    private static final String NOTIFICATION_CHANNEL_ID = "BOOT_SYNC";
+    private static final int NOTIFICATION_ID = 0xB007;
+
+    // Output data: stage durations (ms)
+    public static final String KEY_DURATION_USER_MS = "KEY_DURATION_USER_MS";
+    public static final String KEY_DURATION_TOKEN_MS = "KEY_DURATION_TOKEN_MS";
+    public static final String KEY_DURATION_LICENCES_MS = "KEY_DURATION_LICENCES_MS";
+    public static final String KEY_DURATION_UPLOAD_MS = "KEY_DURATION_UPLOAD_MS";
+    public static final String KEY_DURATION_TOTAL_MS = "KEY_DURATION_TOTAL_MS";
+
+    public BootSyncWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * Enqueues the boot sync pipeline as an expedited job. Does nothing if it is already enqueued or running.
+     *
+     * @param context the {@link Context}
+     */
+    public static void enqueue(Context context) {
+        final OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(BootSyncWorker.class)
+                .setExpedited(OutOfQuotaPolicy.RUN_AS_NON_EXPEDITED_WORK_REQUEST)
+                .setConstraints(new Constraints.Builder().setRequiredNetworkType(NetworkType.CONNECTED).build())
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        final Data.Builder timings = new Data.Builder();
+        return sync(timings) ? Result.success(timings.build()) : Result.failure(timings.build());
+    }
+
+    /**
+     * Runs the pipeline stages.
+     *
+     * @param timings receives the stage durations
+     * @return <b>true</b> if the token and the licences (unless coalesced by the {@link LicenceRefreshScheduler}) were refreshed
+     */
+    private boolean sync(Data.Builder timings) {
+        final Context context = getApplicationContext();
+        final long start = SystemClock.elapsedRealtime();
+
+        // Stage 1: user
+        final User user = PortalpApplication.getUserFromDb(context);
+        recordDuration(timings, KEY_DURATION_USER_MS, start);
+        if (user == null) {
+            Log.d(TAG, "sync(): no user");
+            return true;
+        }
+
+        // Only the licences stage is coalesced: the door configs are uploaded by every run
+        final LicenceRefreshScheduler scheduler = LicenceRefreshScheduler.getInstance(context);
+        final boolean refreshLicences = scheduler.tryBegin();
+        boolean success = false;
+        try {
+            success = syncOnline(user, refreshLicences, timings, start);
+            return success;
+        } finally {
+            if (refreshLicences) {
+                // On failure, the scheduler retries with backoff
+                scheduler.onFinished(success);
+            }
+        }
+    }
+
+    /**
+     * Runs the network stages.
+     *
+     * @param refreshLicences <b>false</b> to skip the licences stage, coalesced by the {@link LicenceRefreshScheduler}
+     * @param start           the pipeline start time
+     * @return <b>true</b> if the token and the licences (unless skipped) were refreshed
+     */
+    private boolean syncOnline(User user, boolean refreshLicences, Data.Builder timings, long start) {
+        final WebServicesHelper webServicesHelper = WebServicesHelper.getInstance(getApplicationContext());
+        long stageStart = SystemClock.elapsedRealtime();
+
+        // Stage 2: token, once
+        final AtomicReference<WebServicesHelper.ResultCode> tokenResult = new AtomicReference<>();
+        final AtomicReference<User> refreshedUser = new AtomicReference<>(user);
+        final CountDownLatch tokenLatch = new CountDownLatch(1);
+        webServicesHelper.refreshToken(user, (resultCode, u) -> {
+            tokenResult.set(resultCode);
+            if (u != null) {
+                refreshedUser.set(u);
+            }
+            tokenLatch.countDown();
+        });
+        if (!await(tokenLatch) || tokenResult.get() != WebServicesHelper.ResultCode.SUCCESS) {
+            Log.d(TAG, "syncOnline(): refreshToken() failed: " + describe(tokenResult.get()));
+            recordDuration(timings, KEY_DURATION_TOKEN_MS, stageStart);
+            return false;
+        }
+        recordDuration(timings, KEY_DURATION_TOKEN_MS, stageStart);
+
+        // Stage 3: licences and pending door configs, concurrently
+        stageStart = SystemClock.elapsedRealtime();
+        final long licencesStart = stageStart;
+        final AtomicReference<WebServicesHelper.ResultCode> licencesResult = new AtomicReference<>();
+        final CountDownLatch licencesLatch = new CountDownLatch(1);
+        if (refreshLicences) {
+            webServicesHelper.getLicences(refreshedUser.get(), SuperEnums.PeriphTypeSEnum.INSTALLER_DEVICE, (resultCode, u) -> {
+                licencesResult.set(resultCode);
+                recordDuration(timings, KEY_DURATION_LICENCES_MS, licencesStart);
+                licencesLatch.countDown();
+            });
+        } else {
+            Log.d(TAG, "syncOnline(): licences refresh coalesced");
+            licencesResult.set(WebServicesHelper.ResultCode.SUCCESS);
+            licencesLatch.countDown();
+        }
+        // Legacy one-by-one upload, kept until all the producers enqueue into the outbox: asynchronous, neither awaited nor timed
+        WebServicesHelper.postPendingDoorConfigs(refreshedUser.get());
+        final long uploadStart = stageStart;
+        final CountDownLatch uploadLatch = new CountDownLatch(1);
+        final DoorConfigOutbox outbox = DoorConfigOutbox.getInstance();
+        if (outbox != null) {
+            new Thread(() -> {
+                try {
+                    outbox.flush();
+                    recordDuration(timings, KEY_DURATION_UPLOAD_MS, uploadStart);
+                } finally {
+                    uploadLatch.countDown();
+                }
+            }, TAG + "-upload").start();
+        } else {
+            uploadLatch.countDown();
+        }
+        final boolean licencesOk = await(licencesLatch) && licencesResult.get() == WebServicesHelper.ResultCode.SUCCESS;
+        if (!licencesOk) {
+            Log.d(TAG, "syncOnline(): getLicences() failed: " + describe(licencesResult.get()));
+        }
+        // The worker must not return before the upload: its process may then be killed
+        if (!await(uploadLatch, UPLOAD_TIMEOUT_S)) {
+            Log.w(TAG, "syncOnline(): upload timeout, the remaining configs are uploaded by the next sync");
+        }
+
+        recordDuration(timings, KEY_DURATION_TOTAL_MS, start);
+        Log.d(TAG, "syncOnline(): done: " + timings.build().getKeyValueMap());
+        return licencesOk;
+    }
+
+    /**
+     * Required to run as an expedited job before Android 12, where it runs as a foreground service.
+     */
+    @NonNull
+    @Override
+    public ForegroundInfo getForegroundInfo() {
+        final Context context = getApplicationContext();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            final NotificationManager notificationManager = context.getSystemService(NotificationManager.class);
+            notificationManager.createNotificationChannel(new NotificationChannel(NOTIFICATION_CHANNEL_ID, context.getApplicationInfo().loadLabel(context.getPackageManager()), NotificationManager.IMPORTANCE_MIN));
+        }
+        return new ForegroundInfo(NOTIFICATION_ID, new NotificationCompat.Builder(context, NOTIFICATION_CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.stat_notify_sync)
+                .setContentTitle(context.getApplicationInfo().loadLabel(context.getPackageManager()))
+                .setPriority(NotificationCompat.PRIORITY_MIN)
+                .setOngoing(true)
+                .build());
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        return await(latch, STAGE_TIMEOUT_S);
+    }
+
+    private static boolean await(CountDownLatch latch, long timeoutS) {
+        try {
+            return latch.await(timeoutS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static synchronized void recordDuration(Data.Builder timings, String key, long stageStart) {
+        timings.putLong(key, SystemClock.elapsedRealtime() - stageStart);
+    }
+
+    private static String describe(WebServicesHelper.ResultCode resultCode) {
+        return resultCode == null ? "timeout" : resultCode + "(" + resultCode.getServerResponseCode() + ")";
+    }
+}
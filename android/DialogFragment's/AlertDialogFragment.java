@@ -22,7 +22,7 @@ import androidx.fragment.app.FragmentManager;
 
 import com.portalp.technician.R;
 import com.portalp.utils.AndroidUtils;
-import com.portalp.utils.JavaUtils;
+import com.portalp.utils.QrCodeUtils;
 
 /**
  * A custom {@link DialogFragment} to show alert, popups, etc..
@@ -175,7 +175,7 @@ public class AlertDialogFragment extends DialogFragment implements DialogInterfa
             LayoutInflater factory = LayoutInflater.from(getContext());
             @SuppressLint("InflateParams") final View view = factory.inflate(R.layout.dialog_qrcode, null);
             ImageView imageView = view.findViewById(R.id.image_view_info_fr);
-            imageView.setImageBitmap(JavaUtils.encodeAsQRCode(qrCodeContent, QRCODE_SIZE));
+            imageView.setImageBitmap(QrCodeUtils.encodeAsQRCode(qrCodeContent, QRCODE_SIZE));
             builder.setView(view);
         }
 
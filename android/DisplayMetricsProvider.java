@@ -0,0 +1,258 @@
+package com.portalp.utils;
+
+import android.app.Activity;
+import android.content.ComponentCallbacks;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Point;
+import android.hardware.display.DisplayManager;
+import android.util.DisplayMetrics;
+import android.view.Display;
+import android.view.WindowManager;
+
+import androidx.annotation.NonNull;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * Provides the display and system bars metrics, computed once per configuration instead of querying the {@link Resources}/{@link WindowManager}
+ * on every call.
+ * <p>
+ * There is one provider per {@link Activity}, measuring its own window ({@link Activity#getWindowManager()}, its {@link Resources}), which may
+ * differ from the whole display in multi-window mode. The other contexts share a provider measuring the default display through the
+ * {@link DisplayManager}: no {@link WindowManager} is ever queried from a non-visual context (StrictMode violation since Android 11).
+ * <p>
+ * The caches are invalidated on configuration change. Call {@link #invalidate()} when the window insets change. Each cached value records the
+ * generation it was computed at, so that a computation racing an invalidation is not kept.
+ */
+public class DisplayMetricsProvider {
+
+    private static final WeakHashMap<Context, DisplayMetricsProvider> INSTANCES = new WeakHashMap<>();
+    private static boolean callbacksRegistered;
+    private static volatile int generation;
+    private static volatile Density systemDensity;
+    // Last lookup, so that the repeated calls of a same caller neither lock nor walk its ContextWrapper chain
+    private static volatile Lookup lastLookup;
+
+    // Weak: the provider is the value of its context entry in INSTANCES
+    private final WeakReference<Context> context;
+    private volatile Metrics metrics;
+
+    private static final class Density {
+        final float value;
+        final int generation;
+
+        Density(float value, int generation) {
+            this.value = value;
+            this.generation = generation;
+        }
+    }
+
+    private static final class Lookup {
+        final WeakReference<Context> caller;
+        final DisplayMetricsProvider provider;
+
+        Lookup(Context caller, DisplayMetricsProvider provider) {
+            this.caller = new WeakReference<>(caller);
+            this.provider = provider;
+        }
+    }
+
+    private static final class Metrics {
+        final int generation;
+        final float density;
+        final int statusBarHeight;
+        final int navigationBarHeight;
+        final int displayWidth;
+        final int displayHeight;
+
+        Metrics(int generation, float density, int statusBarHeight, int navigationBarHeight, int displayWidth, int displayHeight) {
+            this.generation = generation;
+            this.density = density;
+            this.statusBarHeight = statusBarHeight;
+            this.navigationBarHeight = navigationBarHeight;
+            this.displayWidth = displayWidth;
+            this.displayHeight = displayHeight;
+        }
+    }
+
+    private DisplayMetricsProvider(Context context) {
+        this.context = new WeakReference<>(context);
+    }
+
+    /**
+     * @param context the {@link Context}, preferably the {@link Activity} whose window is measured
+     * @return the provider of the given context {@link Activity}, or the one of the default display if it has none
+     */
+    public static DisplayMetricsProvider getInstance(Context context) {
+        final Lookup lookup = lastLookup;
+        if (lookup != null && lookup.caller.get() == context) {
+            return lookup.provider;
+        }
+        final DisplayMetricsProvider provider = findInstance(context);
+        lastLookup = new Lookup(context, provider);
+        return provider;
+    }
+
+    private static synchronized DisplayMetricsProvider findInstance(Context context) {
+        if (!callbacksRegistered) {
+            context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks() {
+                @Override
+                public void onConfigurationChanged(@NonNull Configuration newConfig) {
+                    invalidate();
+                }
+
+                @Override
+                public void onLowMemory() {
+                }
+            });
+            callbacksRegistered = true;
+        }
+        final Activity activity = AndroidUtils.getActivity(context);
+        final Context key = activity != null ? activity : context.getApplicationContext();
+        DisplayMetricsProvider provider = INSTANCES.get(key);
+        if (provider == null) {
+            provider = new DisplayMetricsProvider(key);
+            INSTANCES.put(key, provider);
+        }
+        return provider;
+    }
+
+    /**
+     * @return the system display density, cached until the next configuration change (detected once {@link #getInstance(Context)} has been called)
+     */
+    public static float getSystemDensity() {
+        Density density = systemDensity;
+        final int current = generation;
+        if (density == null || density.generation != current) {
+            density = new Density(Resources.getSystem().getDisplayMetrics().density, current);
+            systemDensity = density;
+        }
+        return density.value;
+    }
+
+    /**
+     * Invalidates the cached metrics of all the providers, to be called when the window insets change.
+     */
+    public static synchronized void invalidate() {
+        generation++;
+    }
+
+    //region Metrics
+    public float getDensity() {
+        return getMetrics().density;
+    }
+
+    public int getStatusBarHeight() {
+        return getMetrics().statusBarHeight;
+    }
+
+    public int getNavigationBarHeight() {
+        return getMetrics().navigationBarHeight;
+    }
+
+    /**
+     * @return the display dimensions, excluding the status bar
+     */
+    @NonNull
+    public Point getDisplayDimensions() {
+        final Metrics m = getMetrics();
+        return new Point(m.displayWidth, m.displayHeight);
+    }
+    //endregion
+
+    //region Conversions
+    public float dpToPx(float dp) {
+        return dp * getMetrics().density;
+    }
+
+    public float pxToDp(float px) {
+        return px / getMetrics().density;
+    }
+
+    /**
+     * Converts dp to px dimensions in bulk.
+     *
+     * @param dp  the DensityPixel values
+     * @param out receives the Pixel values, may be {@code dp} itself
+     * @return {@code out}
+     */
+    public float[] dpToPx(float[] dp, float[] out) {
+        final float density = getMetrics().density;
+        for (int i = 0; i < dp.length; i++) {
+            out[i] = dp[i] * density;
+        }
+        return out;
+    }
+
+    /**
+     * Converts dp to px dimensions in bulk, truncated like {@link AndroidUtils#dpToPx(int)}.
+     *
+     * @param dp  the DensityPixel values
+     * @param out receives the Pixel values, may be {@code dp} itself
+     * @return {@code out}
+     */
+    public int[] dpToPx(int[] dp, int[] out) {
+        final float density = getMetrics().density;
+        for (int i = 0; i < dp.length; i++) {
+            out[i] = (int) (dp[i] * density);
+        }
+        return out;
+    }
+    //endregion
+
+    private Metrics getMetrics() {
+        Metrics m = metrics;
+        // Read before computing: an invalidation during the computation makes its result stale on next call
+        final int current = generation;
+        if (m == null || m.generation != current) {
+            m = computeMetrics(current);
+            metrics = m;
+        }
+        return m;
+    }
+
+    private Metrics computeMetrics(int currentGeneration) {
+        final Context context = this.context.get();
+        final Display display;
+        final Resources resources;
+        if (context instanceof Activity) {
+            display = ((Activity) context).getWindowManager().getDefaultDisplay();
+            resources = context.getResources();
+        } else {
+            // Application context, or a destroyed activity
+            resources = context != null ? context.getResources() : Resources.getSystem();
+            display = context != null
+                    ? ((DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE)).getDisplay(Display.DEFAULT_DISPLAY)
+                    : null;
+        }
+        final int statusBarHeight = getDimensionPixelSize(resources, "status_bar_height");
+        final int navigationBarHeight = getDimensionPixelSize(resources, "navigation_bar_height");
+        if (display == null) {
+            final DisplayMetrics systemMetrics = resources.getDisplayMetrics();
+            return new Metrics(currentGeneration, systemMetrics.density, statusBarHeight, navigationBarHeight, systemMetrics.widthPixels, systemMetrics.heightPixels - statusBarHeight);
+        }
+
+        DisplayMetrics displayMetrics = new DisplayMetrics();
+        display.getMetrics(displayMetrics);
+        int screenWidth = displayMetrics.widthPixels;
+        int screenHeight = displayMetrics.heightPixels;
+
+        // find out if status bar has already been subtracted from screenHeight
+        display.getRealMetrics(displayMetrics);
+        int physicalHeight = displayMetrics.heightPixels;
+        int heightDelta = physicalHeight - screenHeight;
+        if (heightDelta == 0 || heightDelta == navigationBarHeight) {
+            screenHeight -= statusBarHeight;
+        }
+
+        return new Metrics(currentGeneration, resources.getDisplayMetrics().density, statusBarHeight, navigationBarHeight, screenWidth, screenHeight);
+    }
+
+    private static int getDimensionPixelSize(Resources resources, String name) {
+        int resourceId = resources.getIdentifier(name, "dimen", "android");
+        return (resourceId > 0) ? resources.getDimensionPixelSize(resourceId) : 0;
+    }
+}
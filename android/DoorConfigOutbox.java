@@ -0,0 +1,324 @@
+package com.portalp.technician.web_services;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.portalp.utils.HttpClientFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent outbox of pending door JSON configs, uploaded in size-bounded, gzip-compressed batches.
+ * <p>
+ * Each pending config is stored in its own file, named after a monotonic sequence number and its door, so that the outbox survives process death.<br/>
+ * A config is acked by deleting its file once the batch containing it has been accepted by the server: an interrupted {@link #flush()} resumes
+ * with the configs that were not acked yet.<br/>
+ * Batches are posted as a JSON array, with up to {@link #MAX_CONCURRENT_REQUESTS} requests in flight, through the shared {@link HttpClientFactory}.
+ * Since concurrent batches may be answered in any order, a flush only uploads the latest pending config of each door, the older ones being
+ * superseded: a door config can never be overwritten by an older one.
+ */
+public class DoorConfigOutbox {
+
+    private static final String TAG = DoorConfigOutbox.class.getSimpleName();
+
+    private static final String FILE_EXTENSION = ".json";
+    private static final String TMP_EXTENSION = ".tmp";
+    private static final char DOOR_SEPARATOR = '_';
+    private static final int MAX_BATCH_BYTES = 256 * 1024;
+    private static final int MAX_BATCH_ITEMS = 100;
+    private static final int MAX_CONCURRENT_REQUESTS = 3;
+
+    /**
+     * Adds the authentication (headers...) to a batch request.
+     */
+    public interface Authorizer {
+        void authorize(HttpURLConnection connection);
+    }
+
+    private static DoorConfigOutbox instance;
+
+    private final File dir;
+    private final URL batchUrl;
+    private final Authorizer authorizer;
+    private final Object flushLock = new Object();
+    private long nextSeq = -1;
+
+    /**
+     * @param dir        the directory storing the pending configs
+     * @param batchUrl   the URL batches are posted to
+     * @param authorizer the {@link Authorizer}, or null
+     */
+    public DoorConfigOutbox(File dir, URL batchUrl, @Nullable Authorizer authorizer) {
+        this.dir = dir;
+        this.batchUrl = batchUrl;
+        this.authorizer = authorizer;
+    }
+
+    /**
+     * Initializes the app outbox, for instance in {@link android.app.Application#onCreate()}.
+     */
+    public static synchronized void init(File dir, URL batchUrl, @Nullable Authorizer authorizer) {
+        instance = new DoorConfigOutbox(dir, batchUrl, authorizer);
+    }
+
+    /**
+     * @return the app outbox, or null if {@link #init(File, URL, Authorizer)} has not been called
+     */
+    @Nullable
+    public static synchronized DoorConfigOutbox getInstance() {
+        return instance;
+    }
+
+    /**
+     * Persists a door JSON config until it is uploaded. Supersedes the configs of the same door still pending.
+     *
+     * @param doorId the door identifier
+     * @param json   the door JSON config
+     * @throws IOException if it could not be persisted
+     */
+    @WorkerThread
+    public synchronized void enqueue(String doorId, String json) throws IOException {
+        if (nextSeq < 0) {
+            dir.mkdirs();
+            deleteTemporaryFiles();
+            final File[] files = listPending();
+            nextSeq = files.length == 0 ? 0 : parseSeq(files[files.length - 1]) + 1;
+        }
+        // URL encoding keeps any door identifier a valid and distinct file name
+        final String name = String.format("%019d", nextSeq++) + DOOR_SEPARATOR + URLEncoder.encode(doorId, "UTF-8");
+        final File tmp = new File(dir, name + TMP_EXTENSION);
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            out.write(json.getBytes("UTF-8"));
+            out.flush();
+        }
+        if (!tmp.renameTo(new File(dir, name + FILE_EXTENSION))) {
+            tmp.delete();
+            throw new IOException("enqueue(): could not rename " + tmp);
+        }
+    }
+
+    /**
+     * @return the number of configs waiting for upload
+     */
+    public int getPendingCount() {
+        return listPending().length;
+    }
+
+    /**
+     * Uploads all the pending configs. Blocks until all batches have been answered.
+     *
+     * @return the number of configs uploaded and acked
+     */
+    @WorkerThread
+    public int flush() {
+        synchronized (flushLock) {
+            return flushLocked();
+        }
+    }
+
+    private int flushLocked() {
+        deleteTemporaryFiles();
+        final List<List<File>> batches = makeBatches(supersede(listPending()));
+        if (batches.isEmpty()) {
+            return 0;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_CONCURRENT_REQUESTS, batches.size()));
+        final List<Future<Integer>> results = new ArrayList<>();
+        for (List<File> batch : batches) {
+            results.add(executor.submit(() -> postBatch(batch)));
+        }
+        int acked = 0;
+        try {
+            for (Future<Integer> result : results) {
+                try {
+                    acked += result.get();
+                } catch (ExecutionException e) {
+                    // The configs of a failed batch stay pending until the next flush
+                    Log.e(TAG, "flush(): batch failed: " + e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        Log.d(TAG, "flush(): " + acked + " configs uploaded in " + batches.size() + " batches");
+        return acked;
+    }
+
+    /**
+     * Deletes the configs left half-written by a crash during {@link #enqueue(String, String)}. Holds the instance lock, so that no enqueue is
+     * writing meanwhile.
+     */
+    private synchronized void deleteTemporaryFiles() {
+        final File[] files = dir.listFiles((d, name) -> name.endsWith(TMP_EXTENSION));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.delete()) {
+                Log.w(TAG, "deleteTemporaryFiles(): could not delete " + file);
+            }
+        }
+    }
+
+    private File[] listPending() {
+        final File[] files = dir.listFiles((d, name) -> name.endsWith(FILE_EXTENSION));
+        if (files == null) {
+            return new File[0];
+        }
+        // Names are zero-padded sequence numbers: lexicographic order is enqueue order
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static long parseSeq(File file) {
+        final String name = file.getName();
+        final int separator = name.indexOf(DOOR_SEPARATOR);
+        return Long.parseLong(name.substring(0, separator >= 0 ? separator : name.length() - FILE_EXTENSION.length()));
+    }
+
+    /**
+     * @return the door part of the file name, or null for the configs enqueued without door
+     */
+    @Nullable
+    private static String parseDoor(File file) {
+        final String name = file.getName();
+        final int separator = name.indexOf(DOOR_SEPARATOR);
+        return separator >= 0 ? name.substring(separator + 1, name.length() - FILE_EXTENSION.length()) : null;
+    }
+
+    /**
+     * Keeps the latest pending config of each door, deleting the older ones.
+     *
+     * @param files the pending configs, in enqueue order
+     * @return the configs to upload, in enqueue order
+     */
+    private static List<File> supersede(File[] files) {
+        final Map<String, File> latest = new HashMap<>();
+        for (File file : files) {
+            final String door = parseDoor(file);
+            if (door != null) {
+                latest.put(door, file);
+            }
+        }
+        final List<File> kept = new ArrayList<>(files.length);
+        for (File file : files) {
+            final String door = parseDoor(file);
+            if (door == null || latest.get(door) == file) {
+                kept.add(file);
+            } else if (!file.delete()) {
+                Log.w(TAG, "supersede(): could not delete " + file);
+            }
+        }
+        return kept;
+    }
+
+    private static List<List<File>> makeBatches(List<File> files) {
+        final List<List<File>> batches = new ArrayList<>();
+        List<File> batch = new ArrayList<>();
+        long batchBytes = 0;
+        for (File file : files) {
+            final long length = file.length();
+            if (!batch.isEmpty() && (batchBytes + length > MAX_BATCH_BYTES || batch.size() >= MAX_BATCH_ITEMS)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+            batch.add(file);
+            batchBytes += length;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Posts a batch as a gzip-compressed JSON array, then acks its configs if the server accepted it.
+     *
+     * @return the number of acked configs
+     */
+    private int postBatch(List<File> batch) throws IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(body)) {
+            gzip.write('[');
+            for (int i = 0; i < batch.size(); i++) {
+                if (i > 0) {
+                    gzip.write(',');
+                }
+                try (InputStream in = new FileInputStream(batch.get(i))) {
+                    copy(in, gzip);
+                }
+            }
+            gzip.write(']');
+        }
+
+        final HttpClientFactory httpClientFactory = HttpClientFactory.getDefault();
+        final HttpURLConnection connection = httpClientFactory.open(batchUrl);
+        boolean success = false;
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.size());
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            if (authorizer != null) {
+                authorizer.authorize(connection);
+            }
+            final int responseCode = httpClientFactory.execute(connection, body::writeTo);
+            if (responseCode < 200 || responseCode >= 300) {
+                Log.w(TAG, "postBatch(): " + batch.size() + " configs rejected: HTTP " + responseCode);
+                return 0;
+            }
+            // Drain the response so that the keep-alive connection can be reused by the next batch
+            try (InputStream in = connection.getInputStream()) {
+                copy(in, null);
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                connection.disconnect();
+            }
+        }
+
+        int acked = 0;
+        for (File file : batch) {
+            if (file.delete()) {
+                acked++;
+            }
+        }
+        return acked;
+    }
+
+    private static void copy(InputStream in, @Nullable OutputStream out) throws IOException {
+        final byte[] buffer = new byte[8 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (out != null) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.portalp.utils;
+
+import android.content.ComponentCallbacks;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import android.graphics.drawable.Drawable;
+import android.util.LongSparseArray;
+import android.util.SparseArray;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.DrawableRes;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the drawables loaded from resources and their styled (grayscale, tinted) variants, as {@link Drawable.ConstantState}s.
+ * <p>
+ * Each call returns a new {@link Drawable} sharing the cached state, instead of reloading the resource and mutating it.<br/>
+ * The color filters are shared immutable instances, one per color.<br/>
+ * The cache is cleared on configuration change. Themed attributes are resolved with the theme of the first {@link Context} loading a resource.
+ * <p>
+ * Thread-safe: the cache is guarded by the instance lock, held only to read and store the states (the resources are loaded without it), so that
+ * {@link AndroidUtils#getDrawable(Context, int)} may be called from any thread.
+ */
+public class DrawableStyleCache implements ComponentCallbacks {
+
+    /**
+     * Shared filter converting a drawable to a gray image.
+     */
+    public static final ColorFilter GRAYSCALE_FILTER = new PorterDuffColorFilter(Color.GRAY, PorterDuff.Mode.SRC_IN);
+
+    private static DrawableStyleCache instance;
+
+    // Guarded by this
+    private final SparseArray<PorterDuffColorFilter> tintFilters = new SparseArray<>();
+    private final SparseArray<Drawable.ConstantState> plainStates = new SparseArray<>();
+    private final LongSparseArray<Drawable.ConstantState> grayScaleStates = new LongSparseArray<>();
+    // Key: resource id (high 32 bits) and color (low 32 bits)
+    private final LongSparseArray<Drawable.ConstantState> tintedStates = new LongSparseArray<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private DrawableStyleCache(Context context) {
+        context.getApplicationContext().registerComponentCallbacks(this);
+    }
+
+    public static synchronized DrawableStyleCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new DrawableStyleCache(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the shared {@link PorterDuff.Mode#SRC_IN} filter of the given color.
+     *
+     * @param color the color
+     * @return the shared {@link ColorFilter}
+     */
+    @NonNull
+    public synchronized ColorFilter getTintFilter(@ColorInt int color) {
+        PorterDuffColorFilter filter = tintFilters.get(color);
+        if (filter == null) {
+            filter = new PorterDuffColorFilter(color, PorterDuff.Mode.SRC_IN);
+            tintFilters.put(color, filter);
+        }
+        return filter;
+    }
+
+    @Nullable
+    public Drawable getDrawable(Context context, @DrawableRes int drawableResId) {
+        final Drawable.ConstantState state;
+        synchronized (this) {
+            state = plainStates.get(drawableResId);
+        }
+        if (state != null) {
+            hits.incrementAndGet();
+            return state.newDrawable(context.getResources(), context.getTheme());
+        }
+        misses.incrementAndGet();
+        final Drawable drawable = context.getDrawable(drawableResId);
+        if (drawable != null && drawable.getConstantState() != null) {
+            synchronized (this) {
+                plainStates.put(drawableResId, drawable.getConstantState());
+            }
+        }
+        return drawable;
+    }
+
+    /**
+     * @return the drawable converted to a gray image
+     */
+    @Nullable
+    public Drawable getGrayScaleDrawable(Context context, @DrawableRes int drawableResId) {
+        return getStyledDrawable(context, drawableResId, GRAYSCALE_FILTER, grayScaleStates, drawableResId);
+    }
+
+    /**
+     * @return the drawable tinted with the given color
+     */
+    @Nullable
+    public Drawable getTintedDrawable(Context context, @DrawableRes int drawableResId, @ColorInt int color) {
+        final long key = ((long) drawableResId << 32) | (color & 0xFFFFFFFFL);
+        return getStyledDrawable(context, drawableResId, getTintFilter(color), tintedStates, key);
+    }
+
+    private Drawable getStyledDrawable(Context context, @DrawableRes int drawableResId, ColorFilter filter, LongSparseArray<Drawable.ConstantState> states, long key) {
+        Drawable.ConstantState state;
+        synchronized (this) {
+            state = states.get(key);
+        }
+        if (state != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            final Drawable plain = context.getDrawable(drawableResId);
+            if (plain == null) {
+                return null;
+            }
+            // Mutated once, then only used as the template of the copies
+            final Drawable template = plain.mutate();
+            template.setColorFilter(filter);
+            state = template.getConstantState();
+            if (state == null) {
+                return template;
+            }
+            synchronized (this) {
+                states.put(key, state);
+            }
+        }
+        // A copy on the miss path too: the changes of a caller (alpha, bounds...) must not reach the cached state
+        final Drawable drawable = state.newDrawable(context.getResources(), context.getTheme());
+        // Same shared filter instance: no-op if the state already carries it
+        drawable.setColorFilter(filter);
+        return drawable;
+    }
+
+    //region Statistics
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return the ratio of the calls served from the cache, between 0 and 1
+     */
+    public float getHitRate() {
+        final long h = hits.get();
+        final long total = h + misses.get();
+        return total == 0 ? 0 : (float) h / total;
+    }
+    //endregion
+
+    public synchronized void clear() {
+        plainStates.clear();
+        grayScaleStates.clear();
+        tintedStates.clear();
+    }
+
+    //region ComponentCallbacks
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        clear();
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+    //endregion
+}
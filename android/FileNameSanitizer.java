@@ -0,0 +1,98 @@
+package com.portalp.utils;
+
+import android.text.InputFilter;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Removes the characters forbidden in file names ({@link AndroidUtils#FORBIDDEN_CHARS_IN_FILENAME}).
+ * <p>
+ * The forbidden characters are looked up in a precomputed table, the whole input is checked in one pass, and a clean input is returned as is,
+ * without any allocation.
+ */
+public class FileNameSanitizer implements InputFilter {
+
+    private static final boolean[] FORBIDDEN = new boolean[128];
+
+    static {
+        for (int i = 0; i < AndroidUtils.FORBIDDEN_CHARS_IN_FILENAME.length(); i++) {
+            FORBIDDEN[AndroidUtils.FORBIDDEN_CHARS_IN_FILENAME.charAt(i)] = true;
+        }
+    }
+
+    public static boolean isForbidden(char c) {
+        return c < FORBIDDEN.length && FORBIDDEN[c];
+    }
+
+    /**
+     * @param source the file name
+     * @return {@code source} itself if it is clean, or a copy without its forbidden characters
+     */
+    @NonNull
+    public static String sanitize(@NonNull String source) {
+        return sanitize((CharSequence) source).toString();
+    }
+
+    /**
+     * @param source the file name
+     * @return {@code source} itself if it is clean, or a copy without its forbidden characters
+     */
+    @NonNull
+    public static CharSequence sanitize(@NonNull CharSequence source) {
+        final int first = indexOfForbidden(source, 0, source.length());
+        if (first < 0) {
+            return source;
+        }
+        final StringBuilder sb = new StringBuilder(source.length() - 1);
+        sb.append(source, 0, first);
+        for (int i = first + 1; i < source.length(); i++) {
+            final char c = source.charAt(i);
+            if (!isForbidden(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the index of the first forbidden character in {@code source[start, end[}, or -1
+     */
+    private static int indexOfForbidden(CharSequence source, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (isForbidden(source.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public CharSequence filter(CharSequence source, int start, int end, Spanned dest, int dstart, int dend) {
+        final int first = indexOfForbidden(source, start, end);
+        if (first < 0) {
+            // keep the original input
+            return null;
+        }
+        if (source instanceof Spanned) {
+            // keep the spans of the remaining characters
+            final SpannableStringBuilder filtered = new SpannableStringBuilder(source, start, end);
+            for (int i = end - start - 1; i >= first - start; i--) {
+                if (isForbidden(filtered.charAt(i))) {
+                    filtered.delete(i, i + 1);
+                }
+            }
+            return filtered;
+        }
+        final StringBuilder filtered = new StringBuilder(end - start - 1);
+        filtered.append(source, start, first);
+        for (int i = first + 1; i < end; i++) {
+            final char c = source.charAt(i);
+            if (!isForbidden(c)) {
+                filtered.append(c);
+            }
+        }
+        return filtered;
+    }
+}
@@ -0,0 +1,317 @@
+package com.portalp.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * Shared factory of {@link HttpURLConnection}s, built once per trust configuration instead of per call.
+ * <p>
+ * <ul>
+ * <li>The {@link SSLContext} is created once, and its client session cache lets successive connections resume TLS sessions (abbreviated handshakes).</li>
+ * <li>The connections are kept alive and pooled by the platform {@link HttpURLConnection} pool, as long as the response streams are fully read and
+ * closed. Its global settings ({@code http.keepAlive}, {@code http.maxConnections}) are left to their defaults.</li>
+ * <li>The trust is configurable per factory (system, pinned certificates, or trust-all for debug), without changing the global defaults.</li>
+ * <li>Handshake and request latencies are measured, see {@link Metrics}.</li>
+ * </ul>
+ */
+public class HttpClientFactory {
+
+    private static final int SESSION_CACHE_SIZE = 32;
+    private static final int SESSION_TIMEOUT_S = 24 * 60 * 60;
+    private static final int TIMEOUT_MS = 30 * 1000;
+
+    private static HttpClientFactory defaultFactory;
+    private static HttpClientFactory trustAllFactory;
+
+    private final SSLContext sslContext;
+    private final SSLSocketFactory socketFactory;
+    @Nullable
+    private final HostnameVerifier hostnameVerifier;
+    private final Metrics metrics = new Metrics();
+
+    /**
+     * Handshake and request latency metrics.
+     * <ul>
+     * <li>handshake: from the TCP connection to the end of the TLS handshake,</li>
+     * <li>request: from the start of the request (connection included, if not reused) to the response code, the request body upload included.</li>
+     * </ul>
+     */
+    public static class Metrics {
+        private final AtomicLong handshakeCount = new AtomicLong();
+        private final AtomicLong handshakeTotalNanos = new AtomicLong();
+        private final AtomicLong requestCount = new AtomicLong();
+        private final AtomicLong requestTotalNanos = new AtomicLong();
+
+        public long getHandshakeCount() {
+            return handshakeCount.get();
+        }
+
+        public long getHandshakeAverageMs() {
+            final long count = handshakeCount.get();
+            return count == 0 ? 0 : handshakeTotalNanos.get() / count / 1000000;
+        }
+
+        public long getRequestCount() {
+            return requestCount.get();
+        }
+
+        public long getRequestAverageMs() {
+            final long count = requestCount.get();
+            return count == 0 ? 0 : requestTotalNanos.get() / count / 1000000;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "handshakes=" + getHandshakeCount() + " (avg " + getHandshakeAverageMs() + " ms), requests=" + getRequestCount() + " (avg " + getRequestAverageMs() + " ms)";
+        }
+    }
+
+    private HttpClientFactory(TrustManager[] trustManagers, @Nullable HostnameVerifier hostnameVerifier) throws GeneralSecurityException {
+        sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, trustManagers, new SecureRandom());
+        final SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+        if (sessionContext != null) {
+            sessionContext.setSessionCacheSize(SESSION_CACHE_SIZE);
+            sessionContext.setSessionTimeout(SESSION_TIMEOUT_S);
+        }
+        socketFactory = new MeasuringSocketFactory(sslContext.getSocketFactory(), metrics);
+        this.hostnameVerifier = hostnameVerifier;
+    }
+
+    /**
+     * @return the factory using the system trust
+     */
+    public static synchronized HttpClientFactory getDefault() {
+        if (defaultFactory == null) {
+            try {
+                defaultFactory = new HttpClientFactory(null, null);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return defaultFactory;
+    }
+
+    /**
+     * Returns a factory trusting all certificates and host names. Dangerous, only use for debug.
+     *
+     * @return the trust-all factory
+     */
+    public static synchronized HttpClientFactory getTrustAll() {
+        if (trustAllFactory == null) {
+            try {
+                trustAllFactory = new HttpClientFactory(new TrustManager[]{new X509TrustManager() {
+                    public X509Certificate[] getAcceptedIssuers() {
+                        return new X509Certificate[0];
+                    }
+
+                    @Override
+                    public void checkClientTrusted(X509Certificate[] certs, String authType) {
+                    }
+
+                    @Override
+                    public void checkServerTrusted(X509Certificate[] certs, String authType) {
+                    }
+                }}, (hostname, session) -> true);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return trustAllFactory;
+    }
+
+    /**
+     * Creates a factory only trusting the given certificates, for instance a debug server or a local TLS stub server.
+     *
+     * @param certificates the X.509 certificates (PEM or DER) to trust
+     * @return a new factory, to be kept and shared
+     * @throws IOException              if the certificates could not be read
+     * @throws GeneralSecurityException if the certificates are invalid
+     */
+    public static HttpClientFactory withPinnedCertificates(InputStream... certificates) throws IOException, GeneralSecurityException {
+        final CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+        final KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        keyStore.load(null, null);
+        for (int i = 0; i < certificates.length; i++) {
+            final Certificate certificate = certificateFactory.generateCertificate(certificates[i]);
+            keyStore.setCertificateEntry("pinned" + i, certificate);
+        }
+        final TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(keyStore);
+        return new HttpClientFactory(trustManagerFactory.getTrustManagers(), null);
+    }
+
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    public SSLSocketFactory getSocketFactory() {
+        return socketFactory;
+    }
+
+    @Nullable
+    public HostnameVerifier getHostnameVerifier() {
+        return hostnameVerifier;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Opens a connection using this factory TLS configuration.
+     *
+     * @param url the {@link URL}
+     * @return the {@link HttpURLConnection}, not connected yet
+     * @throws IOException if the connection could not be opened
+     */
+    public HttpURLConnection open(URL url) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        if (connection instanceof HttpsURLConnection) {
+            ((HttpsURLConnection) connection).setSSLSocketFactory(socketFactory);
+            if (hostnameVerifier != null) {
+                ((HttpsURLConnection) connection).setHostnameVerifier(hostnameVerifier);
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * Writes a request body.
+     */
+    public interface BodyWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Sends the request of the given connection, without body, and waits for the response code, measuring the request latency.
+     *
+     * @param connection a connection opened by {@link #open(URL)}
+     * @return the HTTP response code
+     * @throws IOException if the request failed
+     */
+    public int execute(HttpURLConnection connection) throws IOException {
+        return execute(connection, null);
+    }
+
+    /**
+     * Sends the request of the given connection with its body, and waits for the response code, measuring the request latency.
+     *
+     * @param connection a connection opened by {@link #open(URL)}, configured for output if there is a body
+     * @param body       the {@link BodyWriter}, or null
+     * @return the HTTP response code
+     * @throws IOException if the request failed
+     */
+    public int execute(HttpURLConnection connection, @Nullable BodyWriter body) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            if (body != null) {
+                try (OutputStream out = connection.getOutputStream()) {
+                    body.writeTo(out);
+                }
+            }
+            return connection.getResponseCode();
+        } finally {
+            metrics.requestCount.incrementAndGet();
+            metrics.requestTotalNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * {@link SSLSocketFactory} measuring the TLS handshakes of the sockets it creates.<br/>
+     * The measure starts once the socket is connected, so that it does not include the TCP connection: the sockets created unconnected by
+     * {@link #createSocket()} are not measured. {@link HttpsURLConnection} layers its sockets over connected ones.
+     */
+    private static class MeasuringSocketFactory extends SSLSocketFactory {
+
+        private final SSLSocketFactory delegate;
+        private final Metrics metrics;
+
+        MeasuringSocketFactory(SSLSocketFactory delegate, Metrics metrics) {
+            this.delegate = delegate;
+            this.metrics = metrics;
+        }
+
+        /**
+         * @param socket a connected socket, not handshaken yet
+         */
+        private Socket measure(Socket socket) {
+            if (socket instanceof SSLSocket) {
+                final long start = System.nanoTime();
+                ((SSLSocket) socket).addHandshakeCompletedListener(event -> {
+                    metrics.handshakeCount.incrementAndGet();
+                    metrics.handshakeTotalNanos.addAndGet(System.nanoTime() - start);
+                });
+            }
+            return socket;
+        }
+
+        @Override
+        public String[] getDefaultCipherSuites() {
+            return delegate.getDefaultCipherSuites();
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites() {
+            return delegate.getSupportedCipherSuites();
+        }
+
+        @Override
+        public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+            return measure(delegate.createSocket(s, host, port, autoClose));
+        }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            return delegate.createSocket();
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return measure(delegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return measure(delegate.createSocket(host, port, localHost, localPort));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return measure(delegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+            return measure(delegate.createSocket(address, port, localAddress, localPort));
+        }
+    }
+}
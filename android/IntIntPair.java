@@ -0,0 +1,56 @@
+package com.portalp.utils;
+
+/**
+ * A pair of ints, with value semantics so that it can be used as a map key without boxing its parts.
+ *
+ * @see IntPairMap
+ */
+public final class IntIntPair {
+
+    public static final String TAG = IntIntPair.class.getSimpleName();
+
+    public final int x;
+    public final int y;
+
+    public IntIntPair(int x, int y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * @return both parts packed into a long, x in the high 32 bits
+     */
+    public long pack() {
+        return pack(x, y);
+    }
+
+    public static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    public static IntIntPair unpack(long packed) {
+        return new IntIntPair((int) (packed >>> 32), (int) packed);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IntIntPair)) {
+            return false;
+        }
+        final IntIntPair other = (IntIntPair) o;
+        return x == other.x && y == other.y;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * x + y;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + x + ", " + y + ")";
+    }
+}
@@ -0,0 +1,174 @@
+package com.portalp.utils;
+
+import java.util.Arrays;
+
+/**
+ * Map keyed on a pair of ints, for instance (doorId, paramIndex), without any key object.
+ * <p>
+ * The keys are packed into longs ({@link IntIntPair#pack(int, int)}) and stored in an open-addressing table with linear probing, next to the
+ * values. The table grows when it is 3/4 full, and removals shift the following entries back instead of leaving tombstones.
+ * <p>
+ * Null values are not allowed. Not thread-safe.
+ *
+ * @param <V> the values
+ */
+public class IntPairMap<V> {
+
+    public static final String TAG = IntPairMap.class.getSimpleName();
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    public IntPairMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize the number of entries held without growing
+     */
+    public IntPairMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 4 / 3) - 1) << 1;
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(int x, int y) {
+        return get(x, y) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int x, int y) {
+        final long key = IntIntPair.pack(x, y);
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            final Object value = values[i];
+            if (value == null) {
+                return null;
+            }
+            if (keys[i] == key) {
+                return (V) value;
+            }
+        }
+    }
+
+    /**
+     * @return the previous value, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int x, int y, V value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        final long key = IntIntPair.pack(x, y);
+        int i = slot(key);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                final V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > (mask + 1) * 3 / 4) {
+            grow();
+        }
+        return null;
+    }
+
+    /**
+     * @return the removed value, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int x, int y) {
+        final long key = IntIntPair.pack(x, y);
+        for (int i = slot(key); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                final V previous = (V) values[i];
+                shiftBack(i);
+                size--;
+                return previous;
+            }
+        }
+        return null;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Calls the visitor for each entry, in table order.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(Visitor<? super V> visitor) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                visitor.visit((int) (keys[i] >>> 32), (int) keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    public interface Visitor<V> {
+        void visit(int x, int y, V value);
+    }
+
+    /**
+     * Empties the given slot, moving back the following entries of the probe sequence which would no longer be reachable.
+     */
+    private void shiftBack(int empty) {
+        for (int i = (empty + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+            final int home = slot(keys[i]);
+            // Move the entry if its home slot is not in ]empty, i], cyclically
+            if (((i - home) & mask) >= ((i - empty) & mask)) {
+                keys[empty] = keys[i];
+                values[empty] = values[i];
+                empty = i;
+            }
+        }
+        values[empty] = null;
+    }
+
+    private void grow() {
+        final long[] oldKeys = keys;
+        final Object[] oldValues = values;
+        allocate((mask + 1) * 2);
+        for (int j = 0; j < oldValues.length; j++) {
+            if (oldValues[j] != null) {
+                int i = slot(oldKeys[j]);
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    private int slot(long key) {
+        // MurmurHash3 finalizer, spreads the packed ints over the low bits
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+}
@@ -0,0 +1,202 @@
+package com.portalp.technician.model.utils;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+
+import com.portalp.technician.web_services.LicenceUpdateBroadcastReceiver;
+import com.portalp.technician.web_services.LicenceUpdateWorker;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single entry point for the licence refreshes, whatever triggers them (boot, periodic work, retries).
+ * <p>
+ * Its state machine is persisted, so that it survives process death:
+ * <ul>
+ * <li>{@link State#IDLE}: a refresh may start, unless the last success is more recent than {@link #MIN_INTERVAL_MS},</li>
+ * <li>{@link State#IN_FLIGHT}: a refresh is running, overlapping triggers are dropped (until {@link #IN_FLIGHT_TIMEOUT_MS}, in case its process died),</li>
+ * <li>{@link State#BACKOFF}: the last refresh failed, the next one is scheduled after a jittered exponential delay.</li>
+ * </ul>
+ */
+public class LicenceRefreshScheduler {
+
+    private static final String TAG = LicenceRefreshScheduler.class.getSimpleName();
+
+    private static final String PREFS_FILE_NAME = "licence_refresh_scheduler";
+    private static final String KEY_STATE = "KEY_STATE";
+    private static final String KEY_ATTEMPT = "KEY_ATTEMPT";
+    private static final String KEY_IN_FLIGHT_SINCE = "KEY_IN_FLIGHT_SINCE";
+    private static final String KEY_NEXT_ATTEMPT_AT = "KEY_NEXT_ATTEMPT_AT";
+    private static final String KEY_LAST_SUCCESS_AT = "KEY_LAST_SUCCESS_AT";
+    private static final String KEY_LEGACY_CANCELLED = "KEY_LEGACY_CANCELLED";
+
+    private static final String UNIQUE_PERIODIC_WORK_NAME = "LICENCE_REFRESH_PERIODIC";
+    private static final String UNIQUE_RETRY_WORK_NAME = "LICENCE_REFRESH_RETRY";
+
+    private static final long PERIOD_HOURS = 12;
+    private static final long MIN_INTERVAL_MS = TimeUnit.MINUTES.toMillis(30);
+    private static final long IN_FLIGHT_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final long BACKOFF_BASE_MS = TimeUnit.SECONDS.toMillis(30);
+    private static final long BACKOFF_MAX_MS = TimeUnit.HOURS.toMillis(6);
+
+    public enum State {
+        IDLE,
+        IN_FLIGHT,
+        BACKOFF
+    }
+
+    private static LicenceRefreshScheduler instance;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final Random random = new Random();
+
+    private LicenceRefreshScheduler(Context context) {
+        this.context = context.getApplicationContext();
+        this.prefs = this.context.getSharedPreferences(PREFS_FILE_NAME, Context.MODE_PRIVATE);
+    }
+
+    public static synchronized LicenceRefreshScheduler getInstance(Context context) {
+        if (instance == null) {
+            instance = new LicenceRefreshScheduler(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Schedules the periodic licence refresh. Does nothing if it is already scheduled.<br/>
+     * May also be called at app start, so that upgraded installs drop the legacy schedules without waiting for a reboot.
+     */
+    public void schedulePeriodic() {
+        cancelLegacySchedules();
+        final PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(BootSyncWorker.class, PERIOD_HOURS, TimeUnit.HOURS)
+                .setConstraints(networkConstraints())
+                .build();
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(UNIQUE_PERIODIC_WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Tries to start a refresh.
+     *
+     * @return <b>true</b> if the caller must run the refresh then call {@link #onFinished(boolean)}<br/>
+     * <b>false</b> if this trigger is coalesced with a running, recent or scheduled refresh
+     */
+    public synchronized boolean tryBegin() {
+        final long now = System.currentTimeMillis();
+        final State state = getState();
+        switch (state) {
+            case IN_FLIGHT:
+                if (now - prefs.getLong(KEY_IN_FLIGHT_SINCE, 0) < IN_FLIGHT_TIMEOUT_MS) {
+                    Log.d(TAG, "tryBegin(): coalesced with the refresh in flight");
+                    return false;
+                }
+                Log.w(TAG, "tryBegin(): stale refresh in flight, restarting");
+                break;
+            case BACKOFF:
+                if (now < prefs.getLong(KEY_NEXT_ATTEMPT_AT, 0)) {
+                    Log.d(TAG, "tryBegin(): coalesced with the scheduled retry");
+                    return false;
+                }
+                break;
+            case IDLE:
+                if (now - prefs.getLong(KEY_LAST_SUCCESS_AT, 0) < MIN_INTERVAL_MS) {
+                    Log.d(TAG, "tryBegin(): last refresh is recent enough");
+                    return false;
+                }
+                break;
+        }
+        prefs.edit()
+                .putString(KEY_STATE, State.IN_FLIGHT.name())
+                .putLong(KEY_IN_FLIGHT_SINCE, now)
+                .apply();
+        return true;
+    }
+
+    /**
+     * Ends the refresh started by {@link #tryBegin()}. On failure, schedules a retry after a jittered exponential backoff.
+     *
+     * @param success <b>true</b> if the refresh succeeded
+     */
+    public synchronized void onFinished(boolean success) {
+        final long now = System.currentTimeMillis();
+        if (success) {
+            prefs.edit()
+                    .putString(KEY_STATE, State.IDLE.name())
+                    .putInt(KEY_ATTEMPT, 0)
+                    .putLong(KEY_LAST_SUCCESS_AT, now)
+                    .apply();
+            WorkManager.getInstance(context).cancelUniqueWork(UNIQUE_RETRY_WORK_NAME);
+            return;
+        }
+
+        final int attempt = prefs.getInt(KEY_ATTEMPT, 0) + 1;
+        final long delay = computeBackoffMs(attempt);
+        prefs.edit()
+                .putString(KEY_STATE, State.BACKOFF.name())
+                .putInt(KEY_ATTEMPT, attempt)
+                .putLong(KEY_NEXT_ATTEMPT_AT, now + delay)
+                .apply();
+        Log.d(TAG, "onFinished(): attempt " + attempt + " failed, retrying in " + delay + " ms");
+
+        final OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(BootSyncWorker.class)
+                .setInitialDelay(delay, TimeUnit.MILLISECONDS)
+                .setConstraints(networkConstraints())
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(UNIQUE_RETRY_WORK_NAME, ExistingWorkPolicy.REPLACE, request);
+    }
+
+    /**
+     * Cancels the {@link LicenceUpdateWorker} periodic work and the {@link LicenceUpdateBroadcastReceiver} alarm scheduled by the previous
+     * versions on each boot, which would keep refreshing the licences besides this scheduler.<br/>
+     * The legacy alarm is looked up with the same PendingIntent factory as {@link LicenceUpdateBroadcastReceiver#scheduleBroadcast(Context)}, and this
+     * is only marked as done once that alarm was actually found and cancelled.
+     */
+    private synchronized void cancelLegacySchedules() {
+        if (prefs.getBoolean(KEY_LEGACY_CANCELLED, false)) {
+            return;
+        }
+        // WorkManager tags each request with its worker class name
+        WorkManager.getInstance(context).cancelAllWorkByTag(LicenceUpdateWorker.class.getName());
+        final PendingIntent alarm = LicenceUpdateBroadcastReceiver.getPendingIntent(context, PendingIntent.FLAG_NO_CREATE);
+        if (alarm == null) {
+            Log.d(TAG, "cancelLegacySchedules(): no legacy alarm found");
+            return;
+        }
+        ((AlarmManager) context.getSystemService(Context.ALARM_SERVICE)).cancel(alarm);
+        alarm.cancel();
+        prefs.edit().putBoolean(KEY_LEGACY_CANCELLED, true).apply();
+        Log.d(TAG, "cancelLegacySchedules(): done");
+    }
+
+    public synchronized State getState() {
+        try {
+            return State.valueOf(prefs.getString(KEY_STATE, State.IDLE.name()));
+        } catch (IllegalArgumentException e) {
+            return State.IDLE;
+        }
+    }
+
+    /**
+     * @return a delay in [backoff / 2, backoff], where backoff doubles at each attempt up to {@link #BACKOFF_MAX_MS}
+     */
+    private long computeBackoffMs(int attempt) {
+        final long backoff = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << Math.min(attempt - 1, 20));
+        return backoff / 2 + (long) (random.nextDouble() * (backoff / 2));
+    }
+
+    private static Constraints networkConstraints() {
+        return new Constraints.Builder().setRequiredNetworkType(NetworkType.CONNECTED).build();
+    }
+}
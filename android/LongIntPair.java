@@ -0,0 +1,39 @@
+package com.portalp.utils;
+
+/**
+ * A pair of a long and an int, with value semantics so that it can be used as a map key without boxing its parts.
+ */
+public final class LongIntPair {
+
+    public static final String TAG = LongIntPair.class.getSimpleName();
+
+    public final long x;
+    public final int y;
+
+    public LongIntPair(long x, int y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LongIntPair)) {
+            return false;
+        }
+        final LongIntPair other = (LongIntPair) o;
+        return x == other.x && y == other.y;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (int) (x ^ (x >>> 32)) + y;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + x + ", " + y + ")";
+    }
+}
@@ -0,0 +1,52 @@
+package com.portalp.utils;
+
+import java.util.Objects;
+
+/**
+ * A pair of a long and an object, with value semantics so that it can be used as a map key without boxing the long.
+ * <p>
+ * The hash code is computed once: do not use pairs of mutable objects as keys.
+ *
+ * @param <T> the right part
+ */
+public final class LongObjPair<T> {
+
+    public static final String TAG = LongObjPair.class.getSimpleName();
+
+    public final long x;
+    public final T y;
+
+    private transient int hash;
+
+    public LongObjPair(long x, T y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LongObjPair)) {
+            return false;
+        }
+        final LongObjPair<?> other = (LongObjPair<?>) o;
+        return x == other.x && Objects.equals(y, other.y);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = 31 * (int) (x ^ (x >>> 32)) + Objects.hashCode(y);
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + x + ", " + y + ")";
+    }
+}
@@ -0,0 +1,481 @@
+package com.portalp.technician.model.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@link PrefsStore} backed by an append-only, memory-mapped log of typed records.
+ * <p>
+ * Unlike the XML {@link SharedPreferences}, a write only appends one record to the log instead of rewriting the whole file.<br/>
+ * The log is loaded on first access, or in the background after {@link #preload()}, and compacted in the background once obsolete records
+ * outweigh live ones.<br/>
+ * On first use, the entries of the legacy XML {@link SharedPreferences} file are migrated into the log, then cleared.
+ * <p>
+ * File layout: [int MAGIC][int end of data] then records [byte type][short key length][key UTF-8][value].
+ */
+public class MappedLogPrefsStore implements PrefsStore, Closeable {
+
+    private static final String TAG = MappedLogPrefsStore.class.getSimpleName();
+
+    private static final int MAGIC = 0x4B564C31; // "KVL1"
+    private static final int HEADER_SIZE = 8;
+    private static final int OFFSET_END = 4;
+    private static final int INITIAL_SIZE = 16 * 1024;
+    private static final int COMPACT_MIN_GARBAGE = 8 * 1024;
+
+    private static final byte TYPE_INT = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_STRING = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+    private static final byte TYPE_REMOVE = 5;
+
+    // Loading and compaction
+    private static final ExecutorService BACKGROUND_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        final Thread thread = new Thread(r, TAG);
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final Context context;
+    private final File file;
+    private final String legacyXmlFileName;
+
+    // Lazily loaded, guarded by this
+    private Map<String, Object> values;
+    private Map<String, Integer> recordSizes;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int end;
+    private int liveBytes;
+    private long writeSeq;
+    private boolean compacting;
+    private boolean closed;
+
+    /**
+     * @param context           the {@link Context}
+     * @param file              the log file
+     * @param legacyXmlFileName the XML {@link SharedPreferences} file to migrate on first use, or null
+     */
+    public MappedLogPrefsStore(Context context, File file, @Nullable String legacyXmlFileName) {
+        this.context = context.getApplicationContext();
+        this.file = file;
+        this.legacyXmlFileName = legacyXmlFileName;
+    }
+
+    /**
+     * Loads the log on a background thread, so that the first access does not load it on the calling thread, often the main one.
+     */
+    public void preload() {
+        BACKGROUND_EXECUTOR.execute(() -> {
+            synchronized (this) {
+                ensureLoaded();
+            }
+        });
+    }
+
+    /**
+     * Flushes and closes the log file. The store then keeps serving the loaded entries from memory, but no longer writes them.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (buffer != null) {
+            buffer.force();
+            buffer = null;
+        }
+        closeChannel();
+    }
+
+    //region PrefsStore
+    @Override
+    public synchronized boolean contains(String key) {
+        ensureLoaded();
+        return values.containsKey(key);
+    }
+
+    @Override
+    public synchronized int getInt(String key, int defValue) {
+        ensureLoaded();
+        final Object val = values.get(key);
+        return val == null ? defValue : (Integer) val;
+    }
+
+    @Override
+    public synchronized long getLong(String key, long defValue) {
+        ensureLoaded();
+        final Object val = values.get(key);
+        return val == null ? defValue : (Long) val;
+    }
+
+    @Nullable
+    @Override
+    public synchronized String getString(String key, @Nullable String defValue) {
+        ensureLoaded();
+        final Object val = values.get(key);
+        return val == null ? defValue : (String) val;
+    }
+
+    @Override
+    public synchronized boolean getBoolean(String key, boolean defValue) {
+        ensureLoaded();
+        final Object val = values.get(key);
+        return val == null ? defValue : (Boolean) val;
+    }
+
+    @Override
+    public synchronized void putInt(String key, int val) {
+        put(key, val);
+    }
+
+    @Override
+    public synchronized void putLong(String key, long val) {
+        put(key, val);
+    }
+
+    @Override
+    public synchronized void putString(String key, @Nullable String val) {
+        if (val == null) {
+            remove(key);
+        } else {
+            put(key, val);
+        }
+    }
+
+    @Override
+    public synchronized void putBoolean(String key, boolean val) {
+        put(key, val);
+    }
+
+    @Override
+    public synchronized void remove(String key) {
+        ensureLoaded();
+        if (values.containsKey(key)) {
+            put(key, null);
+        }
+    }
+
+    @Override
+    public synchronized Map<String, ?> getAll() {
+        ensureLoaded();
+        return new HashMap<>(values);
+    }
+    //endregion
+
+    //region Log
+    private void ensureLoaded() {
+        if (values != null) {
+            return;
+        }
+        values = new HashMap<>();
+        recordSizes = new HashMap<>();
+        try {
+            final boolean exists = file.exists() && file.length() >= HEADER_SIZE;
+            openChannel(exists ? Math.max(file.length(), INITIAL_SIZE) : INITIAL_SIZE);
+            if (exists && buffer.getInt(0) == MAGIC) {
+                readRecords();
+            } else {
+                resetLog();
+                migrateLegacyXml();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "ensureLoaded(): failed to open " + file + ": " + e);
+            buffer = null;
+            closeChannel();
+        }
+    }
+
+    private void openChannel(long size) throws IOException {
+        if (closed) {
+            throw new IOException("store closed");
+        }
+        closeChannel();
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                // Also closes its RandomAccessFile
+                channel.close();
+            } catch (IOException e) {
+                Log.w(TAG, "closeChannel(): " + e);
+            }
+            channel = null;
+        }
+    }
+
+    private void resetLog() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(OFFSET_END, HEADER_SIZE);
+        end = HEADER_SIZE;
+        liveBytes = 0;
+    }
+
+    private void readRecords() {
+        final int dataEnd = buffer.getInt(OFFSET_END);
+        final int limit = dataEnd >= HEADER_SIZE && dataEnd <= buffer.capacity() ? dataEnd : buffer.capacity();
+        int pos = HEADER_SIZE;
+        try {
+            while (pos < limit) {
+                final int start = pos;
+                final byte type = buffer.get(pos);
+                final int keyLength = buffer.getShort(pos + 1) & 0xFFFF;
+                pos += 3;
+                final String key = readUtf8(pos, keyLength);
+                pos += keyLength;
+                final Object val;
+                switch (type) {
+                    case TYPE_INT:
+                        val = buffer.getInt(pos);
+                        pos += 4;
+                        break;
+                    case TYPE_LONG:
+                        val = buffer.getLong(pos);
+                        pos += 8;
+                        break;
+                    case TYPE_BOOLEAN:
+                        val = buffer.get(pos) != 0;
+                        pos += 1;
+                        break;
+                    case TYPE_STRING:
+                        final int length = buffer.getInt(pos);
+                        pos += 4;
+                        val = readUtf8(pos, length);
+                        pos += length;
+                        break;
+                    case TYPE_REMOVE:
+                        val = null;
+                        break;
+                    default:
+                        throw new IllegalStateException("unknown record type " + type);
+                }
+                if (pos > limit) {
+                    throw new IllegalStateException("truncated record");
+                }
+                apply(key, val, pos - start);
+            }
+        } catch (RuntimeException e) {
+            // Keep everything up to the last complete record
+            Log.w(TAG, "readRecords(): log truncated at " + pos + ": " + e);
+        }
+        end = Math.min(pos, limit);
+        buffer.putInt(OFFSET_END, end);
+    }
+
+    private String readUtf8(int pos, int length) {
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(pos + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void migrateLegacyXml() {
+        if (legacyXmlFileName == null) {
+            return;
+        }
+        final SharedPreferences legacy = context.getSharedPreferences(legacyXmlFileName, Context.MODE_PRIVATE);
+        final Map<String, ?> all = legacy.getAll();
+        if (all.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, ?> entry : all.entrySet()) {
+            final Object val = entry.getValue();
+            if (val instanceof Integer || val instanceof Long || val instanceof String || val instanceof Boolean) {
+                put(entry.getKey(), val);
+            } else {
+                Log.w(TAG, "migrateLegacyXml(): unsupported type for key " + entry.getKey() + ": " + val);
+            }
+        }
+        buffer.force();
+        legacy.edit().clear().apply();
+        Log.d(TAG, "migrateLegacyXml(): migrated " + values.size() + " entries from " + legacyXmlFileName);
+    }
+
+    /**
+     * Appends a record to the log and applies it to the in-memory map.
+     *
+     * @param key the key
+     * @param val {@link Integer}, {@link Long}, {@link String}, {@link Boolean}, or null to remove the key
+     */
+    private void put(String key, @Nullable Object val) {
+        ensureLoaded();
+        final ByteBuffer record = encode(key, val);
+        final int size = record.remaining();
+        if (buffer != null) {
+            try {
+                ensureCapacity(end + size);
+                buffer.position(end);
+                buffer.put(record);
+                end += size;
+                buffer.putInt(OFFSET_END, end);
+            } catch (IOException e) {
+                Log.e(TAG, "put(): failed to append to " + file + ": " + e);
+            }
+        }
+        apply(key, val, size);
+        writeSeq++;
+        maybeCompact();
+    }
+
+    private void apply(String key, @Nullable Object val, int recordSize) {
+        final Integer previousSize = recordSizes.remove(key);
+        if (previousSize != null) {
+            liveBytes -= previousSize;
+        }
+        if (val == null) {
+            values.remove(key);
+        } else {
+            values.put(key, val);
+            recordSizes.put(key, recordSize);
+            liveBytes += recordSize;
+        }
+    }
+
+    private static ByteBuffer encode(String key, @Nullable Object val) {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] stringBytes = null;
+        final byte type;
+        int valueSize;
+        if (val == null) {
+            type = TYPE_REMOVE;
+            valueSize = 0;
+        } else if (val instanceof Integer) {
+            type = TYPE_INT;
+            valueSize = 4;
+        } else if (val instanceof Long) {
+            type = TYPE_LONG;
+            valueSize = 8;
+        } else if (val instanceof Boolean) {
+            type = TYPE_BOOLEAN;
+            valueSize = 1;
+        } else {
+            type = TYPE_STRING;
+            stringBytes = ((String) val).getBytes(StandardCharsets.UTF_8);
+            valueSize = 4 + stringBytes.length;
+        }
+        final ByteBuffer record = ByteBuffer.allocate(3 + keyBytes.length + valueSize);
+        record.put(type).putShort((short) keyBytes.length).put(keyBytes);
+        switch (type) {
+            case TYPE_INT:
+                record.putInt((Integer) val);
+                break;
+            case TYPE_LONG:
+                record.putLong((Long) val);
+                break;
+            case TYPE_BOOLEAN:
+                record.put((byte) ((Boolean) val ? 1 : 0));
+                break;
+            case TYPE_STRING:
+                record.putInt(stringBytes.length).put(stringBytes);
+                break;
+        }
+        record.flip();
+        return record;
+    }
+
+    private void ensureCapacity(int required) throws IOException {
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        int size = buffer.capacity();
+        while (size < required) {
+            size *= 2;
+        }
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+    //endregion
+
+    //region Compaction
+    private void maybeCompact() {
+        final int garbage = end - HEADER_SIZE - liveBytes;
+        if (compacting || buffer == null || garbage < COMPACT_MIN_GARBAGE || garbage < liveBytes) {
+            return;
+        }
+        compacting = true;
+        BACKGROUND_EXECUTOR.execute(this::compact);
+    }
+
+    private void compact() {
+        final Map<String, Object> snapshot;
+        final long snapshotSeq;
+        synchronized (this) {
+            snapshot = new HashMap<>(values);
+            snapshotSeq = writeSeq;
+        }
+
+        // Write the live entries to a temp file without holding the lock
+        final File tmp = new File(file.getPath() + ".tmp");
+        int compactedEnd = HEADER_SIZE;
+        try (FileChannel tmpChannel = new RandomAccessFile(tmp, "rw").getChannel()) {
+            tmpChannel.truncate(0);
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            tmpChannel.write(header, 0);
+            for (Map.Entry<String, Object> entry : snapshot.entrySet()) {
+                final ByteBuffer record = encode(entry.getKey(), entry.getValue());
+                compactedEnd += record.remaining();
+                tmpChannel.write(record, tmpChannel.size());
+            }
+            header.putInt(MAGIC).putInt(compactedEnd).flip();
+            tmpChannel.write(header, 0);
+            tmpChannel.force(true);
+        } catch (IOException e) {
+            Log.e(TAG, "compact(): failed: " + e);
+            tmp.delete();
+            synchronized (this) {
+                compacting = false;
+            }
+            return;
+        }
+
+        synchronized (this) {
+            compacting = false;
+            if (closed) {
+                tmp.delete();
+                return;
+            }
+            if (snapshotSeq != writeSeq) {
+                // Written meanwhile: the snapshot is stale, try again later
+                tmp.delete();
+                maybeCompact();
+                return;
+            }
+            try {
+                buffer.force();
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("could not rename " + tmp);
+                }
+                openChannel(Math.max(file.length(), INITIAL_SIZE));
+                end = compactedEnd;
+                Log.d(TAG, "compact(): log compacted to " + end + " bytes");
+            } catch (IOException e) {
+                Log.e(TAG, "compact(): failed to swap logs: " + e);
+                buffer = null;
+                closeChannel();
+            }
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,262 @@
+package com.louisnard.utils;
+
+import android.support.annotation.MainThread;
+import android.view.Choreographer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ingests the fault events streamed by a door into an {@link ObjectsAdapter}, without re-sorting the whole list on each event.
+ * <p>
+ * <ul>
+ * <li>The events are kept sorted by last occurence date: each new event is inserted by binary search. An event with the title of a known one
+ * replaces it, including the same instance offered again with a newer date.</li>
+ * <li>{@link #offer(Object)} may be called from any thread, at any rate: the events wait in a bounded buffer, which either rejects the new
+ * events ({@link DropPolicy#REJECT}, backpressure) or drops the oldest pending ones ({@link DropPolicy#DROP_OLDEST}) when full.</li>
+ * <li>The pending events are coalesced into one batch per frame ({@link Choreographer}), published with
+ * {@link ObjectsAdapter#submitSortedObjects(List, Runnable)}. While a published list is being diffed, the next frames only update the sorted
+ * events: their latest state is published once the previous diff has been applied.</li>
+ * </ul>
+ */
+public class FaultEventIngestor implements Choreographer.FrameCallback {
+
+    public enum DropPolicy {
+        /**
+         * {@link #offer(Object)} returns <b>false</b> when the buffer is full: the producer must slow down or retry.
+         */
+        REJECT,
+        /**
+         * The oldest pending event is dropped to make room for the new one.
+         */
+        DROP_OLDEST
+    }
+
+    private final ObjectsAdapter mAdapter;
+    private final Choreographer mChoreographer;
+    private final int mCapacity;
+    private final int mMaxEvents;
+    private final DropPolicy mDropPolicy;
+
+    // Guarded by mPending
+    private final ArrayDeque<Object> mPending;
+    private boolean mFrameScheduled;
+    private long mDroppedCount;
+
+    // UI thread only
+    private final ArrayList<Object> mSorted = new ArrayList<>();
+    private final ArrayList<Object> mBatch = new ArrayList<>();
+    private final Map<String, Object> mByTitle = new HashMap<>();
+    private boolean mReleased;
+    private boolean mPublishing;
+    private boolean mPublishPending;
+    private final Runnable mOnPublished = this::onPublished;
+
+    /**
+     * @param adapter    the {@link ObjectsAdapter} showing the events
+     * @param capacity   the max number of events pending between two frames
+     * @param maxEvents  the max number of events kept, the oldest ones are removed beyond
+     * @param dropPolicy the {@link DropPolicy} applied when the buffer is full
+     */
+    @MainThread
+    public FaultEventIngestor(ObjectsAdapter adapter, int capacity, int maxEvents, DropPolicy dropPolicy) {
+        mAdapter = adapter;
+        mChoreographer = Choreographer.getInstance();
+        mCapacity = capacity;
+        mMaxEvents = maxEvents;
+        mDropPolicy = dropPolicy;
+        mPending = new ArrayDeque<>(capacity);
+    }
+
+    /**
+     * Replaces all the events, sorting them once.
+     *
+     * @param events the new events
+     */
+    @MainThread
+    public void setEvents(List<Object> events) {
+        synchronized (mPending) {
+            mPending.clear();
+        }
+        mSorted.clear();
+        mByTitle.clear();
+        for (Object event : events) {
+            // The last event of a title wins
+            mByTitle.put(event.getTitle(), event);
+        }
+        mSorted.addAll(mByTitle.values());
+        Collections.sort(mSorted, ObjectsAdapter.BY_LAST_OCCURENCE_DATE);
+        trim();
+        publish();
+    }
+
+    /**
+     * Queues a new event, to be shown on the next frame. May be called from any thread.
+     *
+     * @param event the event
+     * @return <b>false</b> if the event was rejected because the buffer is full ({@link DropPolicy#REJECT})
+     */
+    public boolean offer(Object event) {
+        synchronized (mPending) {
+            if (mPending.size() >= mCapacity) {
+                mDroppedCount++;
+                if (mDropPolicy == DropPolicy.REJECT) {
+                    return false;
+                }
+                mPending.pollFirst();
+            }
+            mPending.addLast(event);
+            if (!mFrameScheduled) {
+                mFrameScheduled = true;
+                mChoreographer.postFrameCallback(this);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of events rejected or dropped because the buffer was full
+     */
+    public long getDroppedCount() {
+        synchronized (mPending) {
+            return mDroppedCount;
+        }
+    }
+
+    /**
+     * Stops publishing the events, for instance when the screen is destroyed.
+     */
+    @MainThread
+    public void release() {
+        mReleased = true;
+        mChoreographer.removeFrameCallback(this);
+        synchronized (mPending) {
+            mPending.clear();
+            mFrameScheduled = false;
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        synchronized (mPending) {
+            mFrameScheduled = false;
+            mBatch.addAll(mPending);
+            mPending.clear();
+        }
+        if (mReleased || mBatch.isEmpty()) {
+            mBatch.clear();
+            return;
+        }
+        for (int i = 0; i < mBatch.size(); i++) {
+            insert(mBatch.get(i));
+        }
+        mBatch.clear();
+        trim();
+        publish();
+    }
+
+    private void insert(Object event) {
+        final Object previous = mByTitle.put(event.getTitle(), event);
+        if (previous != null) {
+            removeSorted(previous);
+        }
+        mSorted.add(insertionIndex(event), event);
+    }
+
+    /**
+     * @return the index after the events of the same date, so that the insertion order is kept among them
+     */
+    private int insertionIndex(Object event) {
+        final int size = mSorted.size();
+        // Fast path: the streamed events are usually the most recent ones
+        if (size == 0 || ObjectsAdapter.BY_LAST_OCCURENCE_DATE.compare(mSorted.get(size - 1), event) <= 0) {
+            return size;
+        }
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (ObjectsAdapter.BY_LAST_OCCURENCE_DATE.compare(mSorted.get(mid), event) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Removes the given instance from the sorted events. It is searched from its date first, then in the whole list, since a re-offered
+     * instance may have been mutated (its date changed) since its insertion.
+     */
+    private void removeSorted(Object event) {
+        // First event of the same date, then the identical one among them
+        int low = 0;
+        int high = mSorted.size();
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (ObjectsAdapter.BY_LAST_OCCURENCE_DATE.compare(mSorted.get(mid), event) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < mSorted.size(); i++) {
+            if (mSorted.get(i) == event) {
+                mSorted.remove(i);
+                return;
+            }
+        }
+        // Not found from its current date: mutated to an earlier date
+        for (int i = low - 1; i >= 0; i--) {
+            if (mSorted.get(i) == event) {
+                mSorted.remove(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest events beyond {@link #mMaxEvents}.
+     */
+    private void trim() {
+        final int excess = mSorted.size() - mMaxEvents;
+        if (excess > 0) {
+            for (int i = 0; i < excess; i++) {
+                final Object removed = mSorted.get(i);
+                if (mByTitle.get(removed.getTitle()) == removed) {
+                    mByTitle.remove(removed.getTitle());
+                }
+            }
+            mSorted.subList(0, excess).clear();
+        }
+    }
+
+    private void publish() {
+        if (mPublishing) {
+            // Only the latest state is published, once the previous diff is applied
+            mPublishPending = true;
+            return;
+        }
+        mPublishing = true;
+        mPublishPending = false;
+        // ListAdapter needs a new list instance per submission
+        mAdapter.submitSortedObjects(new ArrayList<>(mSorted), mOnPublished);
+    }
+
+    private void onPublished() {
+        mPublishing = false;
+        if (mPublishPending && !mReleased) {
+            publish();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FaultEventIngestor{events=" + mSorted.size() + ", dropped=" + getDroppedCount() + ", policy=" + mDropPolicy + '}';
+    }
+}
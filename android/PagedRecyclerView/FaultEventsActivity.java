@@ -0,0 +1,65 @@
+package com.louisnard.utils;
+
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+import com.louisnard.utils.R;
+
+/**
+ * Shows the fault events streamed by a door through an {@link ObjectsAdapter}, fed by a {@link FaultEventIngestor}.<br/>
+ * The item views are pre-inflated off the UI thread before the first events arrive, and recycled through a pool kept by this activity.
+ */
+public class FaultEventsActivity extends AppCompatActivity {
+
+    private static final int PREFETCH_COUNT = 12;
+    private static final int BUFFER_CAPACITY = 256;
+    private static final int MAX_EVENTS = 1000;
+
+    private RecyclerView mRecyclerView;
+    private ObjectsAdapter mObjectsAdapter;
+    private FaultEventIngestor mIngestor;
+    // Shared by the RecyclerViews of this screen only: its views hold the activity
+    private RecyclerView.RecycledViewPool mViewPool;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        // Inflate layout
+        setContentView(R.layout.activity_paged_recycler_view);
+
+        // Set-up RecyclerView
+        mRecyclerView = findViewById(R.id.recycler_view);
+        mRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        mViewPool = ObjectsAdapter.createViewPool();
+        mRecyclerView.setRecycledViewPool(mViewPool);
+        mObjectsAdapter = new ObjectsAdapter(this, null);
+        mRecyclerView.setAdapter(mObjectsAdapter);
+
+        // Inflate the first screen of item views while waiting for the events
+        mObjectsAdapter.prefetchViewHolders(mRecyclerView, PREFETCH_COUNT);
+        mIngestor = new FaultEventIngestor(mObjectsAdapter, BUFFER_CAPACITY, MAX_EVENTS, FaultEventIngestor.DropPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * @return the {@link FaultEventIngestor} to which the events streamed by the door are offered
+     */
+    public FaultEventIngestor getIngestor() {
+        return mIngestor;
+    }
+
+    @Override
+    protected void onDestroy() {
+        mIngestor.release();
+        super.onDestroy();
+    }
+
+    @Override
+    public boolean onSupportNavigateUp() {
+        onBackPressed();
+        return true;
+    }
+
+}
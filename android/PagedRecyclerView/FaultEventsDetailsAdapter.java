@@ -1,61 +1,202 @@
 package com.louisnard.utils;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.Nullable;
+import android.support.v4.text.PrecomputedTextCompat;
+import android.support.v4.widget.TextViewCompat;
+import android.support.v7.recyclerview.extensions.AsyncDifferConfig;
+import android.support.v7.recyclerview.extensions.ListAdapter;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.AppCompatTextView;
 import android.support.v7.widget.RecyclerView;
-import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.LinearLayout;
-import android.widget.TextView;
 
 import com.louisnard.utils.R;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 
 /**
  * Created by a.louisnard on 05/04/2018.
+ * <p>
+ * Sorting and diffing of new lists run on a background thread, then only the changed rows are notified.
  */
 
-public class ObjectsAdapter extends RecyclerView.Adapter<ObjectsAdapter.ObjectViewHolder> {
+public class ObjectsAdapter extends ListAdapter<Object, ObjectsAdapter.ObjectViewHolder> {
 
-    private Context mContext;
-    private List<Object> mObjects;
+    static final Comparator<Object> BY_LAST_OCCURENCE_DATE = (f1, f2) -> f1.getLastOccurenceDate().compareTo(f2.getLastOccurenceDate());
 
-    public ObjectsAdapter(Context context, List<Object> objects) {
-        mContext = context;
-        mObjects = objects;
+    /**
+     * An {@link Object} is identified by its title, and its content changes along with its last occurence date.
+     */
+    private static final DiffUtil.ItemCallback<Object> DIFF_CALLBACK = new DiffUtil.ItemCallback<Object>() {
+        @Override
+        public boolean areItemsTheSame(Object oldItem, Object newItem) {
+            return Objects.equals(oldItem.getTitle(), newItem.getTitle());
+        }
+
+        @Override
+        public boolean areContentsTheSame(Object oldItem, Object newItem) {
+            return Objects.equals(oldItem.getLastOccurenceDate(), newItem.getLastOccurenceDate());
+        }
+    };
+
+    // Single background thread: sorting and diffing of successive lists run in order
+    private static final Executor BACKGROUND_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    // Titles text layout is precomputed on its own thread, so that it is not delayed by sorting/diffing
+    private static final Executor TEXT_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private static final int VIEW_POOL_SIZE = 20;
+
+    private final ItemViewPrefetcher mViewPrefetcher;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private int mSortGeneration;
+    // Stable ids of the current list per position, and per title (null included) then occurrence, UI thread only
+    private final ArrayList<Object> mStableIdItems = new ArrayList<>();
+    private long[] mStableIds = new long[0];
+    private HashMap<String, ArrayList<Long>> mStableIdsByTitle = new HashMap<>();
+    private long mNextStableId;
+
+    public ObjectsAdapter(Context context, @Nullable List<Object> objects) {
+        super(new AsyncDifferConfig.Builder<>(DIFF_CALLBACK).setBackgroundThreadExecutor(BACKGROUND_EXECUTOR).build());
+        mViewPrefetcher = new ItemViewPrefetcher(context, R.layout.item_object);
+        setHasStableIds(true);
+        if (objects != null) {
+            setObjects(objects);
+        }
     }
 
+    /**
+     * Sorts the given objects by last occurence date on a background thread, then publishes the changes.<br/>
+     * Must be called on the UI thread. The given {@link List} is copied and can be modified afterwards.
+     *
+     * @param objects the new {@link List} of objects
+     */
     public void setObjects(List<Object> objects) {
-        mObjects = objects;
-        Collections.sort(mObjects, (f1, f2) -> f1.getLastOccurenceDate().compareTo(f2.getLastOccurenceDate()));
-        notifyDataSetChanged();
+        final int generation = ++mSortGeneration;
+        final List<Object> sorted = new ArrayList<>(objects);
+        BACKGROUND_EXECUTOR.execute(() -> {
+            Collections.sort(sorted, BY_LAST_OCCURENCE_DATE);
+            mMainHandler.post(() -> {
+                // Drop the result if a newer list has been set meanwhile
+                if (generation == mSortGeneration) {
+                    submitList(sorted);
+                }
+            });
+        });
+    }
+
+    /**
+     * Publishes objects already sorted by last occurence date, for instance by a {@link FaultEventIngestor}: only the diff runs on the background
+     * thread.<br/>
+     * Must be called on the UI thread. The given {@link List} must not be modified afterwards.
+     *
+     * @param sorted    the new {@link List} of objects, sorted by {@link #BY_LAST_OCCURENCE_DATE}
+     * @param onApplied called on the UI thread once the diff of this list has been applied, so that the caller can submit the next one
+     */
+    public void submitSortedObjects(List<Object> sorted, Runnable onApplied) {
+        // Drops the results of the pending setObjects() calls
+        ++mSortGeneration;
+        submitList(sorted);
+        // The diff was queued on the single background thread, and its result will be posted to the UI thread: a task queued behind it
+        // then posting to the UI thread runs once the list is applied
+        BACKGROUND_EXECUTOR.execute(() -> mMainHandler.post(onApplied));
+    }
+
+    /**
+     * Creates a {@link RecyclerView.RecycledViewPool} sized for this adapter, to be shared by the {@link RecyclerView}s of a single screen
+     * through {@link RecyclerView#setRecycledViewPool(RecyclerView.RecycledViewPool)}.<br/>
+     * Its views hold their {@link android.app.Activity}: keep it in the Activity, never in a static field.
+     *
+     * @return a new {@link RecyclerView.RecycledViewPool}
+     */
+    public static RecyclerView.RecycledViewPool createViewPool() {
+        final RecyclerView.RecycledViewPool pool = new RecyclerView.RecycledViewPool();
+        pool.setMaxRecycledViews(0, VIEW_POOL_SIZE);
+        return pool;
     }
 
+    /**
+     * Pre-inflates item views off the UI thread, for instance before the first objects are set or before a fling.
+     *
+     * @param parent the {@link RecyclerView} using this adapter
+     * @param count  the number of item views to keep ready
+     */
+    public void prefetchViewHolders(RecyclerView parent, int count) {
+        mViewPrefetcher.prefetch(parent, count);
+    }
+
+    /**
+     * Returns a stable id per object: unlike the title hash codes, the ids never collide, even between objects of equal or null titles.<br/>
+     * The ids are reassigned once per new list, on the first call after it has been applied.
+     */
     @Override
-    public ObjectViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-        View itemView = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_object, parent, false);
-        return new ObjectViewHolder(itemView);
+    public long getItemId(int position) {
+        if (position >= mStableIdItems.size() || mStableIdItems.get(position) != getItem(position)) {
+            updateStableIds();
+        }
+        return mStableIds[position];
+    }
+
+    /**
+     * Assigns the stable ids of the current list: the n-th object of a title keeps the id of the n-th object of this title in the previous list,
+     * new ones get a new id. The ids of the objects no longer in the list are dropped.
+     */
+    private void updateStableIds() {
+        final int count = getItemCount();
+        final HashMap<String, ArrayList<Long>> idsByTitle = new HashMap<>();
+        mStableIds = new long[count];
+        mStableIdItems.clear();
+        for (int i = 0; i < count; i++) {
+            final Object object = getItem(i);
+            ArrayList<Long> titleIds = idsByTitle.get(object.getTitle());
+            if (titleIds == null) {
+                titleIds = new ArrayList<>();
+                idsByTitle.put(object.getTitle(), titleIds);
+            }
+            final ArrayList<Long> previousIds = mStableIdsByTitle.get(object.getTitle());
+            final int occurrence = titleIds.size();
+            final long id = previousIds != null && occurrence < previousIds.size() ? previousIds.get(occurrence) : mNextStableId++;
+            titleIds.add(id);
+            mStableIds[i] = id;
+            mStableIdItems.add(object);
+        }
+        mStableIdsByTitle = idsByTitle;
     }
 
     @Override
-    public void onBindViewHolder(ObjectViewHolder holder, int position) {
-        Object object = mObjects.get(position);
-        holder.mTextView.setText(object.getTitle());
+    public ObjectViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View itemView = mViewPrefetcher.obtain(parent);
+        return new ObjectViewHolder(itemView);
     }
 
     @Override
-    public int getItemCount() {
-        return mObjects.size();
+    public void onBindViewHolder(ObjectViewHolder holder, int position) {
+        Object object = getItem(position);
+        if (object.getTitle() == null) {
+            holder.mTextView.setText(null);
+        } else {
+            // the text layout gets computed in background, the view only waits for it when measured
+            holder.mTextView.setTextFuture(PrecomputedTextCompat.getTextFuture(object.getTitle(), TextViewCompat.getTextMetricsParams(holder.mTextView), TEXT_EXECUTOR));
+        }
     }
 
-    class ObjectViewHolder extends RecyclerView.ViewHolder {
+    static class ObjectViewHolder extends RecyclerView.ViewHolder {
 
         LinearLayout mRootItemView;
-        TextView mTextView;
+        AppCompatTextView mTextView;
 
         public ObjectViewHolder(View itemView) {
             super(itemView);
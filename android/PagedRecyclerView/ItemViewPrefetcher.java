@@ -0,0 +1,59 @@
+package com.louisnard.utils;
+
+import android.content.Context;
+import android.support.annotation.LayoutRes;
+import android.support.annotation.MainThread;
+import android.support.v4.view.AsyncLayoutInflater;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayDeque;
+
+/**
+ * Pre-inflates item views off the UI thread with an {@link AsyncLayoutInflater}, so that creating view holders does not inflate them synchronously.
+ * <p>
+ * All methods must be called on the UI thread.
+ */
+public class ItemViewPrefetcher {
+
+    private final AsyncLayoutInflater mAsyncInflater;
+    @LayoutRes
+    private final int mLayoutResId;
+    private final ArrayDeque<View> mViews = new ArrayDeque<>();
+    private int mPendingCount;
+
+    public ItemViewPrefetcher(Context context, @LayoutRes int layoutResId) {
+        mAsyncInflater = new AsyncLayoutInflater(context);
+        mLayoutResId = layoutResId;
+    }
+
+    /**
+     * Inflates item views on a background thread until {@code count} views are available or pending.
+     *
+     * @param parent the parent the views will be attached to, used for their layout params
+     * @param count  the number of views to keep ready
+     */
+    @MainThread
+    public void prefetch(ViewGroup parent, int count) {
+        while (mViews.size() + mPendingCount < count) {
+            mPendingCount++;
+            mAsyncInflater.inflate(mLayoutResId, parent, (view, resId, p) -> {
+                mPendingCount--;
+                mViews.add(view);
+            });
+        }
+    }
+
+    /**
+     * Returns a pre-inflated item view if any, or inflates one synchronously.
+     *
+     * @param parent the parent the view will be attached to
+     * @return the item {@link View}, not attached to the parent
+     */
+    @MainThread
+    public View obtain(ViewGroup parent) {
+        final View view = mViews.poll();
+        return view != null ? view : LayoutInflater.from(parent.getContext()).inflate(mLayoutResId, parent, false);
+    }
+}
@@ -4,7 +4,6 @@ import android.content.res.Resources;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Rect;
-import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.view.View;
 import android.view.animation.AccelerateDecelerateInterpolator;
@@ -43,9 +42,33 @@ public class LinePagerIndicatorDecoration extends RecyclerView.ItemDecoration {
 
     private final Paint mPaint = new Paint();
 
+    /**
+     * Max number of indicators drawn: above it, only a window of indicators around the active page is drawn.
+     */
+    private final int mMaxIndicators;
+
+    // Layout cache, recomputed only when the item count or the parent size change
+    private int mLayoutItemCount = -1;
+    private int mLayoutWidth = -1;
+    private int mLayoutHeight = -1;
+    private int mIndicatorCount;
+    private float mIndicatorStartX;
+    private float mIndicatorPosY;
+    private float[] mInactiveLines = new float[0];
+
     public LinePagerIndicatorDecoration(int colorActive, int colorInactive) {
+        this(colorActive, colorInactive, 15);
+    }
+
+    /**
+     * @param colorActive   color of the active indicator
+     * @param colorInactive color of the inactive indicators
+     * @param maxIndicators max number of indicators drawn, whatever the item count
+     */
+    public LinePagerIndicatorDecoration(int colorActive, int colorInactive, int maxIndicators) {
         this.colorActive = colorActive;
         this.colorInactive = colorInactive;
+        this.mMaxIndicators = Math.max(1, maxIndicators);
 
         mPaint.setStrokeCap(Paint.Cap.ROUND);
         mPaint.setStrokeWidth(mIndicatorStrokeWidth);
@@ -57,29 +80,35 @@ public class LinePagerIndicatorDecoration extends RecyclerView.ItemDecoration {
     public void onDrawOver(Canvas c, RecyclerView parent, RecyclerView.State state) {
         super.onDrawOver(c, parent, state);
 
+        if (parent.getAdapter() == null) {
+            return;
+        }
         int itemCount = parent.getAdapter().getItemCount();
+        if (itemCount == 0) {
+            return;
+        }
+        computeLayout(itemCount, parent.getWidth(), parent.getHeight());
 
-        // center horizontally, calculate width and subtract half from center
-        float totalLength = mIndicatorItemLength * itemCount;
-        float paddingBetweenItems = Math.max(0, itemCount - 1) * mIndicatorItemPadding;
-        float indicatorTotalWidth = totalLength + paddingBetweenItems;
-        float indicatorStartX = (parent.getWidth() - indicatorTotalWidth) / 2F;
-
-        // center vertically in the allotted space
-        float indicatorPosY = parent.getHeight() - mIndicatorHeight / 2F;
-
-        drawInactiveIndicators(c, indicatorStartX, indicatorPosY, itemCount);
-
-
-        // find active page (which should be highlighted)
-        LinearLayoutManager layoutManager = (LinearLayoutManager) parent.getLayoutManager();
-        int activePosition = layoutManager.findFirstVisibleItemPosition();
+        mPaint.setColor(colorInactive);
+        c.drawLines(mInactiveLines, mPaint);
+
+        // find active page (which should be highlighted): the leftmost visible child
+        View activeChild = null;
+        for (int i = 0; i < parent.getChildCount(); i++) {
+            final View child = parent.getChildAt(i);
+            if (child.getRight() > 0 && (activeChild == null || child.getLeft() < activeChild.getLeft())) {
+                activeChild = child;
+            }
+        }
+        if (activeChild == null) {
+            return;
+        }
+        int activePosition = parent.getChildAdapterPosition(activeChild);
         if (activePosition == RecyclerView.NO_POSITION) {
             return;
         }
 
         // find offset of active page (if the user is scrolling)
-        final View activeChild = layoutManager.findViewByPosition(activePosition);
         int left = activeChild.getLeft();
         int width = activeChild.getWidth();
 
@@ -87,49 +116,74 @@ public class LinePagerIndicatorDecoration extends RecyclerView.ItemDecoration {
         // interpolate offset for smooth animation
         float progress = mInterpolator.getInterpolation(left * -1 / (float) width);
 
-        drawHighlights(c, indicatorStartX, indicatorPosY, activePosition, progress, itemCount);
+        // only a window of indicators is drawn when there are too many items: keep the active one centered in it
+        int windowStart = Math.max(0, Math.min(activePosition - mIndicatorCount / 2, itemCount - mIndicatorCount));
+
+        drawHighlights(c, activePosition - windowStart, progress);
     }
 
-    private void drawInactiveIndicators(Canvas c, float indicatorStartX, float indicatorPosY, int itemCount) {
-        mPaint.setColor(colorInactive);
+    /**
+     * Computes the position of the indicators and the inactive lines, if the item count or the parent size changed.
+     */
+    private void computeLayout(int itemCount, int width, int height) {
+        if (itemCount == mLayoutItemCount && width == mLayoutWidth && height == mLayoutHeight) {
+            return;
+        }
+        mLayoutItemCount = itemCount;
+        mLayoutWidth = width;
+        mLayoutHeight = height;
+        mIndicatorCount = Math.min(itemCount, mMaxIndicators);
+
+        // center horizontally, calculate width and subtract half from center
+        float totalLength = mIndicatorItemLength * mIndicatorCount;
+        float paddingBetweenItems = Math.max(0, mIndicatorCount - 1) * mIndicatorItemPadding;
+        float indicatorTotalWidth = totalLength + paddingBetweenItems;
+        mIndicatorStartX = (width - indicatorTotalWidth) / 2F;
+
+        // center vertically in the allotted space
+        mIndicatorPosY = height - mIndicatorHeight / 2F;
 
         // width of item indicator including padding
         final float itemWidth = mIndicatorItemLength + mIndicatorItemPadding;
 
-        float start = indicatorStartX;
-        for (int i = 0; i < itemCount; i++) {
-            // draw the line for every item
-            c.drawLine(start, indicatorPosY, start + mIndicatorItemLength, indicatorPosY, mPaint);
+        // one line per indicator, drawn in a single batch
+        if (mInactiveLines.length != mIndicatorCount * 4) {
+            mInactiveLines = new float[mIndicatorCount * 4];
+        }
+        float start = mIndicatorStartX;
+        for (int i = 0; i < mIndicatorCount; i++) {
+            mInactiveLines[i * 4] = start;
+            mInactiveLines[i * 4 + 1] = mIndicatorPosY;
+            mInactiveLines[i * 4 + 2] = start + mIndicatorItemLength;
+            mInactiveLines[i * 4 + 3] = mIndicatorPosY;
             start += itemWidth;
         }
     }
 
-    private void drawHighlights(Canvas c, float indicatorStartX, float indicatorPosY,
-                                int highlightPosition, float progress, int itemCount) {
+    private void drawHighlights(Canvas c, int highlightIndex, float progress) {
         mPaint.setColor(colorActive);
 
         // width of item indicator including padding
         final float itemWidth = mIndicatorItemLength + mIndicatorItemPadding;
+        float highlightStart = mIndicatorStartX + itemWidth * highlightIndex;
 
         if (progress == 0F) {
             // no swipe, draw a normal indicator
-            float highlightStart = indicatorStartX + itemWidth * highlightPosition;
-            c.drawLine(highlightStart, indicatorPosY,
-                    highlightStart + mIndicatorItemLength, indicatorPosY, mPaint);
+            c.drawLine(highlightStart, mIndicatorPosY,
+                    highlightStart + mIndicatorItemLength, mIndicatorPosY, mPaint);
         } else {
-            float highlightStart = indicatorStartX + itemWidth * highlightPosition;
             // calculate partial highlight
             float partialLength = mIndicatorItemLength * progress;
 
             // draw the cut off highlight
-            c.drawLine(highlightStart + partialLength, indicatorPosY,
-                    highlightStart + mIndicatorItemLength, indicatorPosY, mPaint);
+            c.drawLine(highlightStart + partialLength, mIndicatorPosY,
+                    highlightStart + mIndicatorItemLength, mIndicatorPosY, mPaint);
 
             // draw the highlight overlapping to the next item as well
-            if (highlightPosition < itemCount - 1) {
+            if (highlightIndex < mIndicatorCount - 1) {
                 highlightStart += itemWidth;
-                c.drawLine(highlightStart, indicatorPosY,
-                        highlightStart + partialLength, indicatorPosY, mPaint);
+                c.drawLine(highlightStart, mIndicatorPosY,
+                        highlightStart + partialLength, mIndicatorPosY, mPaint);
             }
         }
     }
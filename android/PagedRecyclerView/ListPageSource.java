@@ -0,0 +1,27 @@
+package com.louisnard.utils;
+
+import java.util.List;
+
+/**
+ * A {@link PageSource} over an in-memory {@link List}.
+ *
+ * @param <T> the item type
+ */
+public class ListPageSource<T> implements PageSource<T> {
+
+    private final List<T> mItems;
+
+    public ListPageSource(List<T> items) {
+        mItems = items;
+    }
+
+    @Override
+    public int getCount() {
+        return mItems.size();
+    }
+
+    @Override
+    public List<T> loadPage(int offset, int limit) {
+        return mItems.subList(offset, Math.min(offset + limit, mItems.size()));
+    }
+}
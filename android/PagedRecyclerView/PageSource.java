@@ -0,0 +1,29 @@
+package com.louisnard.utils;
+
+import android.support.annotation.WorkerThread;
+
+import java.util.List;
+
+/**
+ * A source of items loaded page by page, for instance the Paging library or a keyset pager over a local DB.
+ *
+ * @param <T> the item type
+ */
+public interface PageSource<T> {
+
+    /**
+     * @return the total number of items
+     */
+    @WorkerThread
+    int getCount();
+
+    /**
+     * Loads one page of items.
+     *
+     * @param offset index of the first item of the page
+     * @param limit  max number of items to load
+     * @return the items, at most {@code limit}
+     */
+    @WorkerThread
+    List<T> loadPage(int offset, int limit);
+}
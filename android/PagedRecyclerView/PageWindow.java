@@ -0,0 +1,199 @@
+package com.louisnard.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.Nullable;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps a bounded window of pages of a {@link PageSource} in memory, and loads the other pages on demand on a background thread.
+ * <p>
+ * All public methods must be called on the UI thread.
+ *
+ * @param <T> the item type
+ */
+public class PageWindow<T> {
+
+    public interface Listener {
+        /**
+         * The total number of items is known.
+         */
+        void onCountLoaded(int count);
+
+        /**
+         * Items {@code [start, start + count[} have been loaded.
+         */
+        void onPageLoaded(int start, int count);
+    }
+
+    private static final Executor LOADER_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final PageSource<T> mSource;
+    private final int mPageSize;
+    private final int mMaxPages;
+    private final int mPrefetchPages;
+    private final Listener mListener;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final SparseArray<List<T>> mPages = new SparseArray<>();
+    private final SparseArray<Boolean> mLoadingPages = new SparseArray<>();
+    // Number of bound items per page: these pages are never evicted
+    private final SparseIntArray mBoundCounts = new SparseIntArray();
+    private int mCount;
+    private int mCurrentPage = -1;
+
+    /**
+     * @param source        the {@link PageSource}
+     * @param pageSize      number of items per page
+     * @param maxPages      max number of pages kept in memory, must be greater than {@code 2 * prefetchPages}
+     * @param prefetchPages number of pages to load ahead of and behind the current position
+     * @param listener      the {@link Listener}
+     */
+    public PageWindow(PageSource<T> source, int pageSize, int maxPages, int prefetchPages, Listener listener) {
+        if (maxPages <= 2 * prefetchPages) {
+            throw new IllegalArgumentException("maxPages must be greater than 2 * prefetchPages");
+        }
+        mSource = source;
+        mPageSize = pageSize;
+        mMaxPages = maxPages;
+        mPrefetchPages = prefetchPages;
+        mListener = listener;
+    }
+
+    /**
+     * Loads the item count then the first pages.
+     */
+    @MainThread
+    public void start() {
+        LOADER_EXECUTOR.execute(() -> {
+            final int count = mSource.getCount();
+            mMainHandler.post(() -> {
+                mCount = count;
+                mListener.onCountLoaded(count);
+                setCurrentPosition(0);
+            });
+        });
+    }
+
+    @MainThread
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Returns the item at the given position, or null if its page is not loaded yet (it then gets loaded).
+     *
+     * @param position the item position
+     * @return the item or null
+     */
+    @MainThread
+    @Nullable
+    public T get(int position) {
+        final int pageIndex = position / mPageSize;
+        final List<T> page = mPages.get(pageIndex);
+        if (page == null) {
+            loadPage(pageIndex);
+            return null;
+        }
+        final int index = position - pageIndex * mPageSize;
+        return index < page.size() ? page.get(index) : null;
+    }
+
+    /**
+     * Indicates that the item at the given position is bound to a view: its page is kept in memory until {@link #unbind(int)}.
+     *
+     * @param position the item position
+     */
+    @MainThread
+    public void bind(int position) {
+        final int pageIndex = position / mPageSize;
+        mBoundCounts.put(pageIndex, mBoundCounts.get(pageIndex) + 1);
+    }
+
+    /**
+     * Indicates that the item at the given position, previously passed to {@link #bind(int)}, is no longer bound to a view.
+     *
+     * @param position the item position
+     */
+    @MainThread
+    public void unbind(int position) {
+        final int pageIndex = position / mPageSize;
+        final int count = mBoundCounts.get(pageIndex) - 1;
+        if (count > 0) {
+            mBoundCounts.put(pageIndex, count);
+        } else {
+            mBoundCounts.delete(pageIndex);
+        }
+    }
+
+    /**
+     * Indicates the current (snap) position: the pages around it get prefetched, and the farthest ones get evicted.
+     *
+     * @param position the current item position
+     */
+    @MainThread
+    public void setCurrentPosition(int position) {
+        final int pageIndex = position / mPageSize;
+        if (pageIndex == mCurrentPage) {
+            return;
+        }
+        mCurrentPage = pageIndex;
+        for (int distance = 0; distance <= mPrefetchPages; distance++) {
+            loadPage(pageIndex + distance);
+            loadPage(pageIndex - distance);
+        }
+    }
+
+    private void loadPage(int pageIndex) {
+        final int offset = pageIndex * mPageSize;
+        if (pageIndex < 0 || offset >= mCount || mPages.get(pageIndex) != null || mLoadingPages.get(pageIndex) != null) {
+            return;
+        }
+        mLoadingPages.put(pageIndex, Boolean.TRUE);
+        LOADER_EXECUTOR.execute(() -> {
+            // Copy so that the page does not keep a reference to the source
+            final List<T> page = new ArrayList<>(mSource.loadPage(offset, mPageSize));
+            mMainHandler.post(() -> {
+                mLoadingPages.remove(pageIndex);
+                mPages.put(pageIndex, page);
+                evictFarthestPages(pageIndex);
+                mListener.onPageLoaded(offset, page.size());
+            });
+        });
+    }
+
+    /**
+     * Evicts the pages farthest from the current one beyond {@link #mMaxPages}, except the page just loaded and the bound pages: the window may
+     * then exceed {@link #mMaxPages} until they get unbound, rather than loading and evicting the same pages in a loop.
+     *
+     * @param loadedPage the index of the page just loaded
+     */
+    private void evictFarthestPages(int loadedPage) {
+        while (mPages.size() > mMaxPages) {
+            int farthestIndex = -1;
+            int farthestDistance = -1;
+            for (int i = 0; i < mPages.size(); i++) {
+                final int pageIndex = mPages.keyAt(i);
+                if (pageIndex == loadedPage || mBoundCounts.get(pageIndex) > 0) {
+                    continue;
+                }
+                final int distance = Math.abs(pageIndex - mCurrentPage);
+                if (distance > farthestDistance) {
+                    farthestDistance = distance;
+                    farthestIndex = i;
+                }
+            }
+            if (farthestIndex < 0) {
+                return;
+            }
+            mPages.removeAt(farthestIndex);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.louisnard.utils;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.support.v7.widget.RecyclerView;
+
+import com.louisnard.utils.R;
+
+import java.util.HashMap;
+
+/**
+ * Adapter showing the objects of a {@link PageSource}, loaded page by page through a {@link PageWindow}.<br/>
+ * Rows whose page is not loaded yet are bound empty, then refreshed once the page is loaded.
+ */
+public class PagedObjectsAdapter extends RecyclerView.Adapter<ObjectsAdapter.ObjectViewHolder> implements PageWindow.Listener {
+
+    private static final int PAGE_SIZE = 50;
+    private static final int MAX_PAGES = 5;
+    private static final int PREFETCH_PAGES = 1;
+
+    private final PageWindow<Object> mPageWindow;
+    // Position bound to each view holder, so that the PageWindow never evicts the pages on screen
+    private final HashMap<RecyclerView.ViewHolder, Integer> mBoundPositions = new HashMap<>();
+
+    public PagedObjectsAdapter(PageSource<Object> source) {
+        mPageWindow = new PageWindow<>(source, PAGE_SIZE, MAX_PAGES, PREFETCH_PAGES, this);
+        mPageWindow.start();
+    }
+
+    /**
+     * Indicates the current (snap) position, so that the pages around it get prefetched.
+     *
+     * @param position the current item position
+     */
+    public void setCurrentPosition(int position) {
+        if (position != RecyclerView.NO_POSITION) {
+            mPageWindow.setCurrentPosition(position);
+        }
+    }
+
+    @Override
+    public ObjectsAdapter.ObjectViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View itemView = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_object, parent, false);
+        return new ObjectsAdapter.ObjectViewHolder(itemView);
+    }
+
+    @Override
+    public void onBindViewHolder(ObjectsAdapter.ObjectViewHolder holder, int position) {
+        final Integer previousPosition = mBoundPositions.put(holder, position);
+        if (previousPosition != null) {
+            mPageWindow.unbind(previousPosition);
+        }
+        mPageWindow.bind(position);
+        Object object = mPageWindow.get(position);
+        holder.mTextView.setText(object != null ? object.getTitle() : null);
+    }
+
+    @Override
+    public void onViewRecycled(ObjectsAdapter.ObjectViewHolder holder) {
+        final Integer position = mBoundPositions.remove(holder);
+        if (position != null) {
+            mPageWindow.unbind(position);
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return mPageWindow.getCount();
+    }
+
+    //region PageWindow.Listener
+    @Override
+    public void onCountLoaded(int count) {
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public void onPageLoaded(int start, int count) {
+        notifyItemRangeChanged(start, count);
+    }
+    //endregion
+}
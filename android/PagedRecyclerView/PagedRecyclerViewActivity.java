@@ -7,15 +7,17 @@ import android.support.v7.widget.DividerItemDecoration;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.PagerSnapHelper;
 import android.support.v7.widget.RecyclerView;
+import android.view.View;
 import android.widget.TextView;
 
 import com.louisnard.utils.R;
 
+import java.util.ArrayList;
+
 public class PagedRecyclerViewActivity extends AppCompatActivity {
 
-    private List<Object> mObjects;
     private RecyclerView mRecyclerView;
-    private ObjectsAdapter mObjectsAdapter;
+    private PagedObjectsAdapter mObjectsAdapter;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -26,13 +28,41 @@ public class PagedRecyclerViewActivity extends AppCompatActivity {
 
         // Set-up RecyclerView with pager
         mRecyclerView = findViewById(R.id.recycler_view);
-        final RecyclerView.LayoutManager layoutManager = new LinearLayoutManager(this, LinearLayoutManager.HORIZONTAL, false);
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(this, LinearLayoutManager.HORIZONTAL, false);
         mRecyclerView.setLayoutManager(layoutManager);
-        PagerSnapHelper snapHelper = new PagerSnapHelper();
+        final PagerSnapHelper snapHelper = new PagerSnapHelper();
         snapHelper.attachToRecyclerView(mRecyclerView);
         mRecyclerView.addItemDecoration(new LinePagerIndicatorDecoration(getResources().getColor(R.color.colorAccent), getResources().getColor(R.color.colorPrimary)));
-        mObjectsAdapter = new ObjectsAdapter(this, mObjects);
+        mObjectsAdapter = new PagedObjectsAdapter(createPageSource());
         mRecyclerView.setAdapter(mObjectsAdapter);
+
+        // Prefetch the pages around the position the pager is heading to
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                mObjectsAdapter.setCurrentPosition(dx >= 0 ? layoutManager.findLastVisibleItemPosition() : layoutManager.findFirstVisibleItemPosition());
+            }
+
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    final View snapView = snapHelper.findSnapView(layoutManager);
+                    if (snapView != null) {
+                        mObjectsAdapter.setCurrentPosition(layoutManager.getPosition(snapView));
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Creates the {@link PageSource} of the objects to show.<br/>
+     * Override to page from a local DB, for instance with a keyset pager.
+     *
+     * @return the {@link PageSource}
+     */
+    protected PageSource<Object> createPageSource() {
+        return new ListPageSource<>(new ArrayList<>());
     }
 
     @Override
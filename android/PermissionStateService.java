@@ -0,0 +1,175 @@
+package com.portalp.utils;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContextCompat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the grant state of the app permissions, so that checking them does not query the {@link PackageManager} on every call.
+ * <p>
+ * Each permission gets a bit index on first use, and each permissions array is compiled once into a {@link BitSet} mask: a multi-permission
+ * query is then a single {@link BitSet#intersects(BitSet)} against the denied permissions.
+ * <p>
+ * Only the granted states are trusted: revoking a permission kills the app process, but a permission may be granted outside of the app (settings,
+ * request results not forwarded here). The cached denied permissions are therefore checked again live before being reported as missing.<br/>
+ * {@link #refresh()} and {@link #onRequestPermissionsResult(String[], int[])} only save these checks.
+ */
+public class PermissionStateService {
+
+    private static PermissionStateService instance;
+
+    private final Context context;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final List<String> permissions = new ArrayList<>();
+    private final Map<List<String>, BitSet> masks = new HashMap<>();
+    private final BitSet denied = new BitSet();
+
+    private PermissionStateService(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static synchronized PermissionStateService getInstance(Context context) {
+        if (instance == null) {
+            instance = new PermissionStateService(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Indicates whether the user has granted the given permissions to the application.
+     *
+     * @param permissions the {@link String}[] permissions
+     * @return <b>true</b> if the user has granted all the required permissions<br/>
+     * <b>false</b> if at least one permission is missing
+     */
+    public synchronized boolean hasPermissions(@NonNull String[] permissions) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return true;
+        }
+        return !isAnyDenied(getMask(permissions));
+    }
+
+    /**
+     * Re-checks the grant state of all the known permissions.
+     */
+    public synchronized void refresh() {
+        for (int i = 0; i < permissions.size(); i++) {
+            check(i);
+        }
+    }
+
+    /**
+     * Updates the cache with the result of a permissions request.
+     */
+    public synchronized void onRequestPermissionsResult(@NonNull String[] permissions, @NonNull int[] grantResults) {
+        for (int i = 0; i < permissions.length && i < grantResults.length; i++) {
+            denied.set(getIndex(permissions[i]), grantResults[i] != PackageManager.PERMISSION_GRANTED);
+        }
+    }
+
+    /**
+     * Requests all the missing permissions among the given ones, in a single request.
+     *
+     * @param activity    the {@link Activity} receiving the result
+     * @param permissions the {@link String}[] permissions
+     * @param requestCode the request code
+     * @return <b>true</b> if all the permissions are already granted and nothing was requested
+     */
+    public boolean requestMissingPermissions(@NonNull Activity activity, @NonNull String[] permissions, int requestCode) {
+        final String[] missing = getMissingPermissions(permissions);
+        if (missing.length == 0) {
+            return true;
+        }
+        ActivityCompat.requestPermissions(activity, missing, requestCode);
+        return false;
+    }
+
+    /**
+     * @return the missing permissions among the given ones, for which a rationale should be shown before requesting them
+     */
+    @NonNull
+    public List<String> getPermissionsNeedingRationale(@NonNull Activity activity, @NonNull String[] permissions) {
+        final List<String> rationale = new ArrayList<>();
+        for (String permission : getMissingPermissions(permissions)) {
+            if (ActivityCompat.shouldShowRequestPermissionRationale(activity, permission)) {
+                rationale.add(permission);
+            }
+        }
+        return rationale;
+    }
+
+    /**
+     * @return the permissions not granted among the given ones
+     */
+    @NonNull
+    public synchronized String[] getMissingPermissions(@NonNull String[] permissions) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M || !isAnyDenied(getMask(permissions))) {
+            return new String[0];
+        }
+        final List<String> missing = new ArrayList<>();
+        for (String permission : permissions) {
+            if (denied.get(getIndex(permission))) {
+                missing.add(permission);
+            }
+        }
+        return missing.toArray(new String[0]);
+    }
+
+    /**
+     * @return <b>true</b> if a permission of the given mask is denied, checking again live the ones cached as denied
+     */
+    private boolean isAnyDenied(BitSet mask) {
+        if (!denied.intersects(mask)) {
+            return false;
+        }
+        for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+            if (denied.get(i)) {
+                check(i);
+            }
+        }
+        return denied.intersects(mask);
+    }
+
+    private BitSet getMask(String[] permissions) {
+        BitSet mask = masks.get(Arrays.asList(permissions));
+        if (mask == null) {
+            mask = new BitSet();
+            for (String permission : permissions) {
+                mask.set(getIndex(permission));
+            }
+            // Copy the key: the caller may modify its array
+            masks.put(Arrays.asList(permissions.clone()), mask);
+        }
+        return mask;
+    }
+
+    /**
+     * @return the bit index of the given permission, checking its grant state if it is new
+     */
+    private int getIndex(String permission) {
+        Integer index = indexes.get(permission);
+        if (index == null) {
+            index = permissions.size();
+            permissions.add(permission);
+            indexes.put(permission, index);
+            check(index);
+        }
+        return index;
+    }
+
+    private void check(int index) {
+        denied.set(index, ContextCompat.checkSelfPermission(context, permissions.get(index)) != PackageManager.PERMISSION_GRANTED);
+    }
+}
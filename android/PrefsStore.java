@@ -0,0 +1,39 @@
+package com.portalp.technician.model.utils;
+
+import androidx.annotation.Nullable;
+
+import java.util.Map;
+
+/**
+ * A typed key-value store backing {@link SharedPrefsUtils}.
+ * <p>
+ * Implementations: {@link XmlPrefsStore} (Android XML {@link android.content.SharedPreferences}) and {@link MappedLogPrefsStore} (append-only memory-mapped log).
+ */
+public interface PrefsStore {
+
+    boolean contains(String key);
+
+    int getInt(String key, int defValue);
+
+    long getLong(String key, long defValue);
+
+    @Nullable
+    String getString(String key, @Nullable String defValue);
+
+    boolean getBoolean(String key, boolean defValue);
+
+    void putInt(String key, int val);
+
+    void putLong(String key, long val);
+
+    void putString(String key, @Nullable String val);
+
+    void putBoolean(String key, boolean val);
+
+    void remove(String key);
+
+    /**
+     * @return a snapshot of all the entries of the store
+     */
+    Map<String, ?> getAll();
+}
@@ -0,0 +1,55 @@
+package com.portalp.utils;
+
+import static android.graphics.Color.BLACK;
+import static android.graphics.Color.WHITE;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.Nullable;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * Helper class offering QR code static util methods.
+ * <p>
+ * Kept apart (utils-qr) so that ZXing is only loaded by the screens displaying QR codes.
+ */
+public class QrCodeUtils {
+
+    private static final UtilsMetrics.Timer ENCODE_QR_CODE_TIMER = UtilsMetrics.timer("QrCodeUtils.encodeAsQRCode");
+
+    public static @Nullable
+    Bitmap encodeAsQRCode(String str, int size) {
+        final long start = ENCODE_QR_CODE_TIMER.start();
+        try {
+            return _encodeAsQRCode(str, size);
+        } finally {
+            ENCODE_QR_CODE_TIMER.stop(start);
+        }
+    }
+
+    private static Bitmap _encodeAsQRCode(String str, int size) {
+        BitMatrix result;
+        try {
+            result = new MultiFormatWriter().encode(str,
+                    BarcodeFormat.QR_CODE, size, size, null);
+        } catch (IllegalArgumentException | WriterException e) {
+            return null;
+        }
+        int w = result.getWidth();
+        int h = result.getHeight();
+        int[] pixels = new int[w * h];
+        for (int y = 0; y < h; y++) {
+            int offset = y * w;
+            for (int x = 0; x < w; x++) {
+                pixels[offset + x] = result.get(x, y) ? BLACK : WHITE;
+            }
+        }
+        Bitmap bitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        bitmap.setPixels(pixels, 0, size, 0, 0, w, h);
+        return bitmap;
+    }
+}
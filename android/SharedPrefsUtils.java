@@ -4,9 +4,15 @@ import android.content.Context;
 import android.content.SharedPreferences;
 
 import com.portalp.com_library.model.utils.Units;
+import com.portalp.utils.UtilsMetrics;
+
+import java.io.File;
+import java.util.EnumMap;
 
 /**
  * Helper class meant to interact with the Android {@link SharedPreferences}.
+ * <p>
+ * The app preferences are read and written through a {@link PrefsStore}, see {@link #setBackend(Context, Backend)}.
  */
 public class SharedPrefsUtils {
 
@@ -17,6 +23,90 @@ public class SharedPrefsUtils {
     public static final String KEY_UNIT = "KEY_UNIT_";
     public static final String KEY_LOGIN = "login";
 
+    public enum Backend {
+        /**
+         * Android XML {@link SharedPreferences}, see {@link XmlPrefsStore}.
+         */
+        XML,
+        /**
+         * Append-only memory-mapped log, see {@link MappedLogPrefsStore}.<br/>
+         * The existing XML data is migrated on first use.
+         */
+        MAPPED_LOG
+    }
+
+    /**
+     * Converts a value from its {@link Units.DoorUnit} to a {@link Units.DisplayUnit}, see {@link #convertUnits(Context, Units.DoorUnit[], double[], UnitConverter)}.
+     */
+    public interface UnitConverter {
+        double convert(double value, Units.DoorUnit doorUnit, Units.DisplayUnit displayUnit);
+    }
+
+    private static Backend backend = Backend.XML;
+    private static volatile PrefsStore store;
+
+    private static final UtilsMetrics.Timer READ_TIMER = UtilsMetrics.timer("SharedPrefsUtils.read");
+    private static final UtilsMetrics.Timer WRITE_TIMER = UtilsMetrics.timer("SharedPrefsUtils.write");
+
+    // Units cache: the preferred Units.DisplayUnit of each Units.DoorUnit is read once, then kept up to date by save()
+    private static final Units.DisplayUnit[] DISPLAY_UNITS = Units.DisplayUnit.values();
+    private static final EnumMap<Units.DoorUnit, String> UNIT_KEYS = new EnumMap<>(Units.DoorUnit.class);
+    private static volatile EnumMap<Units.DoorUnit, Units.DisplayUnit> units;
+
+    static {
+        for (Units.DoorUnit doorUnit : Units.DoorUnit.values()) {
+            UNIT_KEYS.put(doorUnit, KEY_UNIT + doorUnit);
+        }
+    }
+
+    /**
+     * Selects the {@link PrefsStore} backend. Should be called once, before any other call, for instance in {@link android.app.Application#onCreate()}.<br/>
+     * A {@link MappedLogPrefsStore} starts loading right away on a background thread, and the store of the previous backend is closed.
+     *
+     * @param context the {@link Context}
+     * @param backend the {@link Backend}
+     */
+    public static synchronized void setBackend(Context context, Backend backend) {
+        if (SharedPrefsUtils.backend != backend) {
+            final PrefsStore previous = store;
+            SharedPrefsUtils.backend = backend;
+            store = null;
+            units = null;
+            if (previous instanceof MappedLogPrefsStore) {
+                ((MappedLogPrefsStore) previous).close();
+            }
+        }
+        final PrefsStore s = getStore(context);
+        if (s instanceof MappedLogPrefsStore) {
+            ((MappedLogPrefsStore) s).preload();
+        }
+    }
+
+    /**
+     * Gets the {@link PrefsStore} of the app preferences.
+     *
+     * @param context the {@link Context}
+     * @return the {@link PrefsStore}
+     */
+    public static PrefsStore getStore(Context context) {
+        PrefsStore s = store;
+        if (s == null) {
+            synchronized (SharedPrefsUtils.class) {
+                s = store;
+                if (s == null) {
+                    if (backend == Backend.MAPPED_LOG) {
+                        final File file = new File(context.getApplicationContext().getFilesDir(), SHARED_PREFS_FILE_NAME + ".kvlog");
+                        s = new MappedLogPrefsStore(context, file, SHARED_PREFS_FILE_NAME);
+                    } else {
+                        s = new XmlPrefsStore(context.getApplicationContext(), SHARED_PREFS_FILE_NAME);
+                    }
+                    store = s;
+                }
+            }
+        }
+        return s;
+    }
+
     public static SharedPreferences.Editor getSharedPrefEditor(Context context, String pref) {
         return context.getSharedPreferences(pref, Context.MODE_PRIVATE).edit();
     }
@@ -33,11 +123,21 @@ public class SharedPrefsUtils {
      * @param val     the val
      */
     public static void save(Context context, String key, int val) {
-        context.getSharedPreferences(SHARED_PREFS_FILE_NAME, Context.MODE_PRIVATE).edit().putInt(key, val).apply();
+        final long start = WRITE_TIMER.start();
+        try {
+            getStore(context).putInt(key, val);
+        } finally {
+            WRITE_TIMER.stop(start);
+        }
     }
 
     public static void save(Context context, String key, long val) {
-        context.getSharedPreferences(SHARED_PREFS_FILE_NAME, Context.MODE_PRIVATE).edit().putLong(key, val).apply();
+        final long start = WRITE_TIMER.start();
+        try {
+            getStore(context).putLong(key, val);
+        } finally {
+            WRITE_TIMER.stop(start);
+        }
     }
 
     /**
@@ -48,7 +148,12 @@ public class SharedPrefsUtils {
      * @return the int
      */
     public static int getInt(Context context, String key) {
-        return context.getSharedPreferences(SHARED_PREFS_FILE_NAME, Context.MODE_PRIVATE).getInt(key, 0);
+        final long start = READ_TIMER.start();
+        try {
+            return getStore(context).getInt(key, 0);
+        } finally {
+            READ_TIMER.stop(start);
+        }
     }
 
     /**
@@ -59,7 +164,12 @@ public class SharedPrefsUtils {
      * @param val     the val
      */
     public static void save(Context context, String key, String val) {
-        context.getSharedPreferences(SHARED_PREFS_FILE_NAME, Context.MODE_PRIVATE).edit().putString(key, val).apply();
+        final long start = WRITE_TIMER.start();
+        try {
+            getStore(context).putString(key, val);
+        } finally {
+            WRITE_TIMER.stop(start);
+        }
     }
 
     /**
@@ -70,7 +180,12 @@ public class SharedPrefsUtils {
      * @return the String ! could be null
      */
     public static String getString(Context context, String key) {
-        return context.getSharedPreferences(SHARED_PREFS_FILE_NAME, Context.MODE_PRIVATE).getString(key, null);
+        final long start = READ_TIMER.start();
+        try {
+            return getStore(context).getString(key, null);
+        } finally {
+            READ_TIMER.stop(start);
+        }
     }
 
 
@@ -82,10 +197,12 @@ public class SharedPrefsUtils {
      * @param val     the val
      */
     public static void save(Context context, String key, boolean val) {
-        context.getSharedPreferences(SHARED_PREFS_FILE_NAME, Context.MODE_PRIVATE)
-                .edit()
-                .putBoolean(key, val)
-                .apply();
+        final long start = WRITE_TIMER.start();
+        try {
+            getStore(context).putBoolean(key, val);
+        } finally {
+            WRITE_TIMER.stop(start);
+        }
     }
 
     /**
@@ -96,7 +213,12 @@ public class SharedPrefsUtils {
      * @return the boolean
      */
     public static boolean getBooleanData(Context context, String key) {
-        return context.getSharedPreferences(SHARED_PREFS_FILE_NAME, Context.MODE_PRIVATE).getBoolean(key, false);
+        final long start = READ_TIMER.start();
+        try {
+            return getStore(context).getBoolean(key, false);
+        } finally {
+            READ_TIMER.stop(start);
+        }
     }
 
     /**
@@ -107,10 +229,15 @@ public class SharedPrefsUtils {
      * @param displayUnit {@link Units.DisplayUnit}
      */
     public static void save(Context context, Units.DoorUnit doorUnit, Units.DisplayUnit displayUnit) {
-        context.getSharedPreferences(SHARED_PREFS_FILE_NAME, Context.MODE_PRIVATE)
-                .edit()
-                .putInt(KEY_UNIT + doorUnit, displayUnit.ordinal())
-                .apply();
+        getStore(context).putInt(UNIT_KEYS.get(doorUnit), displayUnit.ordinal());
+        synchronized (SharedPrefsUtils.class) {
+            if (units != null) {
+                // Copy-on-write so that readers never need a lock
+                final EnumMap<Units.DoorUnit, Units.DisplayUnit> updated = new EnumMap<>(units);
+                updated.put(doorUnit, displayUnit);
+                units = updated;
+            }
+        }
     }
 
     /**
@@ -121,12 +248,69 @@ public class SharedPrefsUtils {
      * @return {@link Units.DisplayUnit}
      */
     public static Units.DisplayUnit getUnit(Context context, Units.DoorUnit doorUnit) {
-        int unitOrdinal = context.getSharedPreferences(SHARED_PREFS_FILE_NAME, Context.MODE_PRIVATE).getInt(KEY_UNIT + doorUnit, -1);
-        if (unitOrdinal == -1) {
-            return Units.DisplayUnit.getDefaultDisplayUnit(doorUnit);
-        } else {
-            return Units.DisplayUnit.values()[unitOrdinal];
+        return getUnits(context).get(doorUnit);
+    }
+
+    /**
+     * Gets the user favorite {@link Units.DisplayUnit} of each row of a parameters table in one pass, without any preferences lookup per row.
+     *
+     * @param context   the {@link Context}
+     * @param doorUnits the {@link Units.DoorUnit} of each row
+     * @param out       receives the {@link Units.DisplayUnit} of each row, must be at least as long as {@code doorUnits}
+     * @return {@code out}
+     */
+    public static Units.DisplayUnit[] getUnits(Context context, Units.DoorUnit[] doorUnits, Units.DisplayUnit[] out) {
+        final EnumMap<Units.DoorUnit, Units.DisplayUnit> units = getUnits(context);
+        for (int i = 0; i < doorUnits.length; i++) {
+            out[i] = units.get(doorUnits[i]);
+        }
+        return out;
+    }
+
+    /**
+     * Converts a whole parameters table to the user favorite {@link Units.DisplayUnit}s in one pass, without any preferences lookup per row.<br/>
+     * The values are converted in place.
+     *
+     * @param context   the {@link Context}
+     * @param doorUnits the {@link Units.DoorUnit} of each row
+     * @param values    the value of each row, in its {@link Units.DoorUnit}, must be at least as long as {@code doorUnits}
+     * @param converter the {@link UnitConverter} applied to each row
+     * @return {@code values}, converted
+     */
+    public static double[] convertUnits(Context context, Units.DoorUnit[] doorUnits, double[] values, UnitConverter converter) {
+        final EnumMap<Units.DoorUnit, Units.DisplayUnit> units = getUnits(context);
+        for (int i = 0; i < doorUnits.length; i++) {
+            values[i] = converter.convert(values[i], doorUnits[i], units.get(doorUnits[i]));
+        }
+        return values;
+    }
+
+    /**
+     * Gets the user favorite {@link Units.DisplayUnit} of every {@link Units.DoorUnit}, or the default values.
+     *
+     * @param context the {@link Context}
+     * @return the cached {@link EnumMap}, <b>must not be modified</b>
+     */
+    private static EnumMap<Units.DoorUnit, Units.DisplayUnit> getUnits(Context context) {
+        final EnumMap<Units.DoorUnit, Units.DisplayUnit> cached = units;
+        return cached != null ? cached : loadUnits(context);
+    }
+
+    private static synchronized EnumMap<Units.DoorUnit, Units.DisplayUnit> loadUnits(Context context) {
+        if (units == null) {
+            final PrefsStore prefsStore = getStore(context);
+            final EnumMap<Units.DoorUnit, Units.DisplayUnit> loaded = new EnumMap<>(Units.DoorUnit.class);
+            for (Units.DoorUnit doorUnit : UNIT_KEYS.keySet()) {
+                final int unitOrdinal = prefsStore.getInt(UNIT_KEYS.get(doorUnit), -1);
+                if (unitOrdinal < 0 || unitOrdinal >= DISPLAY_UNITS.length) {
+                    loaded.put(doorUnit, Units.DisplayUnit.getDefaultDisplayUnit(doorUnit));
+                } else {
+                    loaded.put(doorUnit, DISPLAY_UNITS[unitOrdinal]);
+                }
+            }
+            units = loaded;
         }
+        return units;
     }
 
 }
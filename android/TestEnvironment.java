@@ -0,0 +1,64 @@
+package com.portalp.utils;
+
+/**
+ * Detects once which test frameworks are present in the current run.
+ * <p>
+ * Each probe is a constant of a holder class: it runs on first access only (class initialization is lazy and thread-safe), then reading it
+ * needs no lock.
+ */
+public final class TestEnvironment {
+
+    private TestEnvironment() {
+    }
+
+    /**
+     * @return <b>true</b> if Espresso (AndroidX or legacy support library) is present
+     */
+    public static boolean isEspresso() {
+        return EspressoHolder.PRESENT;
+    }
+
+    /**
+     * @return <b>true</b> if Robolectric is present
+     */
+    public static boolean isRobolectric() {
+        return RobolectricHolder.PRESENT;
+    }
+
+    /**
+     * @return <b>true</b> if a JUnit runner (local or instrumented) is present
+     */
+    public static boolean isJUnit() {
+        return JUnitHolder.PRESENT;
+    }
+
+    /**
+     * @return <b>true</b> if any test framework is present
+     */
+    public static boolean isTest() {
+        return isEspresso() || isRobolectric() || isJUnit();
+    }
+
+    private static final class EspressoHolder {
+        static final boolean PRESENT = isClassPresent("androidx.test.espresso.Espresso") || isClassPresent("android.support.test.espresso.Espresso");
+    }
+
+    private static final class RobolectricHolder {
+        static final boolean PRESENT = isClassPresent("org.robolectric.Robolectric");
+    }
+
+    private static final class JUnitHolder {
+        // Not junit.framework.*: it is on the Android boot classpath of the release builds too
+        static final boolean PRESENT = isClassPresent("org.junit.runner.JUnitCore") || isClassPresent("androidx.test.platform.app.InstrumentationRegistry");
+    }
+
+    private static boolean isClassPresent(String className) {
+        try {
+            // Do not initialize the probed class
+            Class.forName(className, false, TestEnvironment.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
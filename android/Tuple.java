@@ -1,7 +1,12 @@
 package com.portalp.utils;
 
+import java.util.Objects;
+
 /**
- * A tuple.
+ * A tuple, with value semantics so that it can be used as a map key.
+ * <p>
+ * The hash code is computed once: do not use tuples of mutable objects as keys.<br/>
+ * For primitive parts, prefer {@link IntIntPair}, {@link LongIntPair}, {@link LongObjPair} or {@link IntPairMap}, which do not box them.
  *
  * @param <X> the left part
  * @param <Y> the right part
@@ -13,8 +18,37 @@ public class Tuple<X, Y> {
     public final X x;
     public final Y y;
 
+    private transient int hash;
+
     public Tuple(X x, Y y) {
         this.x = x;
         this.y = y;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Tuple)) {
+            return false;
+        }
+        final Tuple<?, ?> other = (Tuple<?, ?>) o;
+        return hashCode() == other.hashCode() && Objects.equals(x, other.x) && Objects.equals(y, other.y);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = 31 * Objects.hashCode(x) + Objects.hashCode(y);
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + x + ", " + y + ")";
+    }
+}
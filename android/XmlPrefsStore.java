@@ -0,0 +1,76 @@
+package com.portalp.technician.model.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.Nullable;
+
+import java.util.Map;
+
+/**
+ * {@link PrefsStore} backed by the Android XML {@link SharedPreferences}.
+ */
+public class XmlPrefsStore implements PrefsStore {
+
+    private final SharedPreferences prefs;
+
+    public XmlPrefsStore(Context context, String fileName) {
+        prefs = context.getSharedPreferences(fileName, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return prefs.contains(key);
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        return prefs.getInt(key, defValue);
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        return prefs.getLong(key, defValue);
+    }
+
+    @Nullable
+    @Override
+    public String getString(String key, @Nullable String defValue) {
+        return prefs.getString(key, defValue);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        return prefs.getBoolean(key, defValue);
+    }
+
+    @Override
+    public void putInt(String key, int val) {
+        prefs.edit().putInt(key, val).apply();
+    }
+
+    @Override
+    public void putLong(String key, long val) {
+        prefs.edit().putLong(key, val).apply();
+    }
+
+    @Override
+    public void putString(String key, @Nullable String val) {
+        prefs.edit().putString(key, val).apply();
+    }
+
+    @Override
+    public void putBoolean(String key, boolean val) {
+        prefs.edit().putBoolean(key, val).apply();
+    }
+
+    @Override
+    public void remove(String key) {
+        prefs.edit().remove(key).apply();
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+        return prefs.getAll();
+    }
+}
@@ -0,0 +1,341 @@
+package com.portalp.com_library.model.utils;
+
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.widget.TextView;
+
+import androidx.databinding.BindingAdapter;
+import androidx.databinding.InverseBindingAdapter;
+import androidx.databinding.InverseBindingListener;
+import androidx.databinding.InverseMethod;
+import androidx.databinding.ObservableFloat;
+import androidx.databinding.ObservableInt;
+import androidx.databinding.adapters.ListenerUtil;
+
+import com.portalp.com_library.R;
+
+/**
+ * Two-way data-binding of primitive values to {@link TextView}s, without the boxing of {@link SafeUnbox}.
+ * <p>
+ * Back the model fields with {@link ObservableInt}, {@link ObservableFloat}... then bind them with the {@code intValue}/{@code floatValue} attributes:
+ * <pre>
+ * &lt;EditText app:intValue="@={model.count}" /&gt;
+ * </pre>
+ * The values are parsed straight from the {@link TextView} text without allocating, and the view is not updated when its text already holds the
+ * value, which keeps the cursor in place while typing. The small int values are set as cached {@link String}s, the other ones are formatted into
+ * a shared buffer then copied, since {@link TextView#setText(char[], int, int)} would keep the buffer itself.
+ * <p>
+ * The {@link TextWatcher} of each view is tracked with {@link ListenerUtil}, under the {@code primitive_value_watcher} id resource
+ * (ids.xml).
+ * <p>
+ * The @InverseMethod's {@link #formatInt(int)}/{@link #parseInt(String)} are meant for the standard {@code android:text} attribute
+ * (@={PrimitiveBindingAdapters.formatInt(model.count)}), for which the small values strings are cached.
+ * <p>
+ * Must be used on the UI thread.
+ */
+public class PrimitiveBindingAdapters {
+
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1023;
+    private static final String[] SMALL_INTS = new String[CACHE_HIGH - CACHE_LOW + 1];
+
+    /**
+     * Number of fraction digits written by {@link #setFloatValue(TextView, float)}, trailing zeros are trimmed.
+     */
+    public static final int FLOAT_FRACTION_DIGITS = 3;
+    private static final int FLOAT_SCALE = 1000;
+
+    // Only used on the UI thread, and copied before reaching a view: sized for Long.MIN_VALUE and its fraction
+    private static final char[] BUFFER = new char[32];
+
+    //region android:text converters
+    @InverseMethod("parseInt")
+    public static String formatInt(int value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            String s = SMALL_INTS[value - CACHE_LOW];
+            if (s == null) {
+                s = new String(BUFFER, 0, formatInt(value, BUFFER));
+                SMALL_INTS[value - CACHE_LOW] = s;
+            }
+            return s;
+        }
+        return new String(BUFFER, 0, formatInt(value, BUFFER));
+    }
+
+    public static int parseInt(String value) {
+        return value == null ? 0 : parseInt(value, 0);
+    }
+    //endregion
+
+    //region intValue
+    @BindingAdapter("intValue")
+    public static void setIntValue(TextView view, int value) {
+        final CharSequence text = view.getText();
+        // An unparsable text (empty, lone sign...) reads as 0: kept while the user is typing
+        if (parseInt(text, value + 1) == value || (value == 0 && !isInt(text))) {
+            return;
+        }
+        view.setText(formatInt(value));
+    }
+
+    @InverseBindingAdapter(attribute = "intValue", event = "intValueAttrChanged")
+    public static int getIntValue(TextView view) {
+        return parseInt(view.getText(), 0);
+    }
+
+    @BindingAdapter("intValueAttrChanged")
+    public static void setIntValueListener(TextView view, InverseBindingListener listener) {
+        setValueListener(view, listener);
+    }
+    //endregion
+
+    //region floatValue
+    @BindingAdapter("floatValue")
+    public static void setFloatValue(TextView view, float value) {
+        final CharSequence text = view.getText();
+        final float parsed = parseFloat(text, Float.NaN);
+        // An unparsable text (empty, lone sign...) reads as 0: kept while the user is typing
+        if (parsed == round(value) || (value == 0 && Float.isNaN(parsed))) {
+            return;
+        }
+        view.setText(new String(BUFFER, 0, formatFloat(value, BUFFER)));
+    }
+
+    @InverseBindingAdapter(attribute = "floatValue", event = "floatValueAttrChanged")
+    public static float getFloatValue(TextView view) {
+        return parseFloat(view.getText(), 0f);
+    }
+
+    @BindingAdapter("floatValueAttrChanged")
+    public static void setFloatValueListener(TextView view, InverseBindingListener listener) {
+        setValueListener(view, listener);
+    }
+    //endregion
+
+    //region Formatting
+    /**
+     * Writes the decimal representation of the value at the start of the buffer.
+     *
+     * @return the number of chars written
+     */
+    public static int formatInt(int value, char[] buffer) {
+        return formatLong(value, buffer, 0);
+    }
+
+    /**
+     * Writes the value with up to {@link #FLOAT_FRACTION_DIGITS} fraction digits at the start of the buffer.
+     *
+     * @return the number of chars written
+     */
+    public static int formatFloat(float value, char[] buffer) {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            return formatInt(0, buffer);
+        }
+        final long scaled = Math.round((double) value * FLOAT_SCALE);
+        int length = 0;
+        if (scaled < 0) {
+            buffer[length++] = '-';
+        }
+        final long abs = scaled == Long.MIN_VALUE ? Long.MAX_VALUE : Math.abs(scaled);
+        length = formatLong(abs / FLOAT_SCALE, buffer, length);
+        long fraction = abs % FLOAT_SCALE;
+        if (fraction != 0) {
+            int digits = FLOAT_FRACTION_DIGITS;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            buffer[length++] = '.';
+            for (int i = digits - 1; i >= 0; i--) {
+                buffer[length + i] = (char) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            length += digits;
+        }
+        return length;
+    }
+
+    private static int formatLong(long value, char[] buffer, int offset) {
+        if (value == 0) {
+            buffer[offset] = '0';
+            return offset + 1;
+        }
+        // Digits are computed on the negative value, which also holds Long.MIN_VALUE
+        final boolean negative = value < 0;
+        long v = negative ? value : -value;
+        int digits = 0;
+        for (long t = v; t != 0; t /= 10) {
+            digits++;
+        }
+        int end = offset + digits + (negative ? 1 : 0);
+        if (negative) {
+            buffer[offset] = '-';
+        }
+        for (int i = end - 1; v != 0; i--) {
+            buffer[i] = (char) ('0' - v % 10);
+            v /= 10;
+        }
+        return end;
+    }
+    //endregion
+
+    //region Parsing
+    /**
+     * Parses a decimal int, without allocating.
+     *
+     * @param text         the text, with an optional sign and surrounding spaces
+     * @param defaultValue returned if the text is not a valid int
+     * @return the value
+     */
+    public static int parseInt(CharSequence text, int defaultValue) {
+        int i = 0;
+        int end = text.length();
+        while (i < end && text.charAt(i) == ' ') {
+            i++;
+        }
+        while (end > i && text.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (i == end) {
+            return defaultValue;
+        }
+        final boolean negative = text.charAt(i) == '-';
+        if (negative || text.charAt(i) == '+') {
+            i++;
+            if (i == end) {
+                return defaultValue;
+            }
+        }
+        // Accumulated negatively, which also holds Integer.MIN_VALUE
+        long result = 0;
+        for (; i < end; i++) {
+            final int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return defaultValue;
+            }
+            result = result * 10 - digit;
+            if (result < Integer.MIN_VALUE) {
+                return defaultValue;
+            }
+        }
+        if (!negative && result == Integer.MIN_VALUE) {
+            return defaultValue;
+        }
+        return (int) (negative ? result : -result);
+    }
+
+    /**
+     * @return <b>true</b> if the text is a valid int for {@link #parseInt(CharSequence, int)}
+     */
+    private static boolean isInt(CharSequence text) {
+        // An invalid text returns the default value, whichever it is
+        return parseInt(text, 0) != 0 || parseInt(text, 1) != 1;
+    }
+
+    /**
+     * Parses a decimal float, with '.' or ',' as decimal separator, without allocating.<br/>
+     * The fraction digits after the {@link #FLOAT_FRACTION_DIGITS}th are ignored.
+     *
+     * @param text         the text, with an optional sign and surrounding spaces
+     * @param defaultValue returned if the text is not a valid float
+     * @return the value
+     */
+    public static float parseFloat(CharSequence text, float defaultValue) {
+        int i = 0;
+        int end = text.length();
+        while (i < end && text.charAt(i) == ' ') {
+            i++;
+        }
+        while (end > i && text.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (i == end) {
+            return defaultValue;
+        }
+        final boolean negative = text.charAt(i) == '-';
+        if (negative || text.charAt(i) == '+') {
+            i++;
+        }
+        long integer = 0;
+        long fraction = 0;
+        int fractionDigits = -1;
+        boolean hasDigits = false;
+        for (; i < end; i++) {
+            final char c = text.charAt(i);
+            if ((c == '.' || c == ',') && fractionDigits < 0) {
+                fractionDigits = 0;
+                continue;
+            }
+            final int digit = c - '0';
+            if (digit < 0 || digit > 9) {
+                return defaultValue;
+            }
+            hasDigits = true;
+            if (fractionDigits < 0) {
+                integer = integer * 10 + digit;
+                if (integer > Integer.MAX_VALUE) {
+                    return defaultValue;
+                }
+            } else if (fractionDigits < FLOAT_FRACTION_DIGITS) {
+                fraction = fraction * 10 + digit;
+                fractionDigits++;
+            }
+        }
+        if (!hasDigits) {
+            return defaultValue;
+        }
+        for (int d = Math.max(fractionDigits, 0); d < FLOAT_FRACTION_DIGITS; d++) {
+            fraction *= 10;
+        }
+        final float value = (float) ((integer * FLOAT_SCALE + fraction) / (double) FLOAT_SCALE);
+        return negative ? -value : value;
+    }
+
+    /**
+     * @return the value as it reads once formatted then parsed
+     */
+    private static float round(float value) {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            return 0f;
+        }
+        return (float) (Math.round((double) value * FLOAT_SCALE) / (double) FLOAT_SCALE);
+    }
+    //endregion
+
+    /**
+     * Registers a single {@link TextWatcher} per view, only its listener is replaced on rebind.<br/>
+     * The watcher is kept in a view tag: a static map would keep the view alive through the watcher listener.
+     */
+    private static void setValueListener(TextView view, InverseBindingListener listener) {
+        ValueWatcher watcher = ListenerUtil.getListener(view, R.id.primitive_value_watcher);
+        if (watcher == null) {
+            if (listener == null) {
+                return;
+            }
+            watcher = new ValueWatcher();
+            view.addTextChangedListener(watcher);
+            ListenerUtil.trackListener(view, watcher, R.id.primitive_value_watcher);
+        }
+        watcher.listener = listener;
+    }
+
+    private static class ValueWatcher implements TextWatcher {
+
+        private InverseBindingListener listener;
+
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            if (listener != null) {
+                listener.onChange();
+            }
+        }
+    }
+}
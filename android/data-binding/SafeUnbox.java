@@ -8,6 +8,8 @@ import androidx.databinding.InverseMethod;
  * In the data-binding expressions in the XML layouts (@{} et @={}), when not wrapping objects explicitly with {@link #safeUnbox(Byte)}... methods, critical warnings get generated at build time.
  * <p>
  * The @InverseMethod's are useful when using two-ways data-binding in the layouts (@={}).
+ * <p>
+ * Each two-ways update boxes the value again: for frequently edited values, prefer primitive observable fields bound with {@link PrimitiveBindingAdapters}.
  */
 public class SafeUnbox {
 
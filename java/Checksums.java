@@ -0,0 +1,278 @@
+package com.portalp.utils;
+
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Checksums of the door-controller protocols, as {@link Checksum}s so that they can be updated incrementally and plugged into
+ * {@link FrameDecoder}.
+ * <ul>
+ * <li>{@link #crc16Ccitt()}: CRC-16/CCITT-FALSE (poly 0x1021, init 0xFFFF, not reflected),</li>
+ * <li>{@link #crc16Modbus()}: CRC-16/MODBUS (poly 0x8005 reflected, init 0xFFFF), to be sent little-endian,</li>
+ * <li>{@link #crc32()}: CRC-32, the intrinsic {@link CRC32},</li>
+ * <li>{@link #crc32c()}: CRC-32C (Castagnoli), the intrinsic {@code java.util.zip.CRC32C} when the runtime has it (Java 9+, Android 14+).</li>
+ * </ul>
+ * The table implementations process 8 bytes per step (slicing-by-8), their tables are built once on first use.
+ */
+public class Checksums {
+
+    private Checksums() {
+    }
+
+    //region Factories
+    public static Checksum crc16Ccitt() {
+        return new Crc16Ccitt();
+    }
+
+    public static Checksum crc16Modbus() {
+        return new ReflectedCrc(ModbusTables.TABLES, 16, 0xFFFF, 0);
+    }
+
+    public static Checksum crc32() {
+        return new CRC32();
+    }
+
+    public static Checksum crc32c() {
+        final Constructor<? extends Checksum> constructor = Crc32cIntrinsic.CONSTRUCTOR;
+        if (constructor != null) {
+            try {
+                return constructor.newInstance();
+            } catch (ReflectiveOperationException e) {
+                // Fall back to the tables
+            }
+        }
+        return new ReflectedCrc(Crc32cTables.TABLES, 32, 0xFFFFFFFF, 0xFFFFFFFF);
+    }
+    //endregion
+
+    //region One-shot
+    public static int crc16Ccitt(byte[] data, int offset, int length) {
+        return (int) compute(crc16Ccitt(), data, offset, length);
+    }
+
+    public static int crc16Modbus(byte[] data, int offset, int length) {
+        return (int) compute(crc16Modbus(), data, offset, length);
+    }
+
+    public static long crc32(byte[] data, int offset, int length) {
+        return compute(crc32(), data, offset, length);
+    }
+
+    public static long crc32c(byte[] data, int offset, int length) {
+        return compute(crc32c(), data, offset, length);
+    }
+
+    private static long compute(Checksum checksum, byte[] data, int offset, int length) {
+        checksum.update(data, offset, length);
+        return checksum.getValue();
+    }
+    //endregion
+
+    /**
+     * Updates the checksum with the remaining bytes of the buffer, which is consumed.<br/>
+     * Heap buffers are read in place, other buffers through the intrinsic or table {@code update(ByteBuffer)} when available.
+     */
+    public static void update(Checksum checksum, ByteBuffer buffer) {
+        if (checksum instanceof TableCrc) {
+            ((TableCrc) checksum).update(buffer);
+        } else if (checksum instanceof CRC32) {
+            ((CRC32) checksum).update(buffer);
+        } else if (buffer.hasArray()) {
+            checksum.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+        } else {
+            while (buffer.hasRemaining()) {
+                checksum.update(buffer.get());
+            }
+        }
+    }
+
+    //region Implementations
+    /**
+     * Slicing-by-8 table CRC.
+     */
+    private abstract static class TableCrc implements Checksum {
+
+        protected final int init;
+        protected int crc;
+
+        TableCrc(int init) {
+            this.init = init;
+            this.crc = init;
+        }
+
+        public void update(ByteBuffer buffer) {
+            if (buffer.hasArray()) {
+                update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                buffer.position(buffer.limit());
+                return;
+            }
+            final byte[] chunk = new byte[Math.min(buffer.remaining(), 4096)];
+            while (buffer.hasRemaining()) {
+                final int length = Math.min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, length);
+                update(chunk, 0, length);
+            }
+        }
+
+        @Override
+        public void reset() {
+            crc = init;
+        }
+    }
+
+    /**
+     * Not reflected CRC-16: the CRC is shifted left, the bytes enter at the top.
+     */
+    private static final class Crc16Ccitt extends TableCrc {
+
+        Crc16Ccitt() {
+            super(0xFFFF);
+        }
+
+        @Override
+        public void update(int b) {
+            final int[][] t = CcittTables.TABLES;
+            crc = ((crc << 8) ^ t[0][((crc >>> 8) ^ b) & 0xFF]) & 0xFFFF;
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len) {
+            final int[][] t = CcittTables.TABLES;
+            int c = crc;
+            final int end8 = off + (len & ~7);
+            for (; off < end8; off += 8) {
+                c ^= ((b[off] & 0xFF) << 8) | (b[off + 1] & 0xFF);
+                c = t[7][c >>> 8] ^ t[6][c & 0xFF]
+                        ^ t[5][b[off + 2] & 0xFF] ^ t[4][b[off + 3] & 0xFF]
+                        ^ t[3][b[off + 4] & 0xFF] ^ t[2][b[off + 5] & 0xFF]
+                        ^ t[1][b[off + 6] & 0xFF] ^ t[0][b[off + 7] & 0xFF];
+            }
+            for (final int end = off + (len & 7); off < end; off++) {
+                c = ((c << 8) ^ t[0][((c >>> 8) ^ b[off]) & 0xFF]) & 0xFFFF;
+            }
+            crc = c;
+        }
+
+        @Override
+        public long getValue() {
+            return crc;
+        }
+    }
+
+    /**
+     * Reflected CRC-16 or CRC-32: the CRC is shifted right, the bytes enter at the bottom.
+     */
+    private static final class ReflectedCrc extends TableCrc {
+
+        private final int[][] t;
+        private final boolean wide;
+        private final int xorOut;
+
+        ReflectedCrc(int[][] tables, int width, int init, int xorOut) {
+            super(init);
+            this.t = tables;
+            this.wide = width == 32;
+            this.xorOut = xorOut;
+        }
+
+        @Override
+        public void update(int b) {
+            crc = (crc >>> 8) ^ t[0][(crc ^ b) & 0xFF];
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len) {
+            int c = crc;
+            final int end8 = off + (len & ~7);
+            if (wide) {
+                for (; off < end8; off += 8) {
+                    c ^= (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16 | (b[off + 3] & 0xFF) << 24;
+                    c = t[7][c & 0xFF] ^ t[6][(c >>> 8) & 0xFF] ^ t[5][(c >>> 16) & 0xFF] ^ t[4][c >>> 24]
+                            ^ t[3][b[off + 4] & 0xFF] ^ t[2][b[off + 5] & 0xFF]
+                            ^ t[1][b[off + 6] & 0xFF] ^ t[0][b[off + 7] & 0xFF];
+                }
+            } else {
+                for (; off < end8; off += 8) {
+                    c ^= (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8;
+                    c = t[7][c & 0xFF] ^ t[6][c >>> 8]
+                            ^ t[5][b[off + 2] & 0xFF] ^ t[4][b[off + 3] & 0xFF]
+                            ^ t[3][b[off + 4] & 0xFF] ^ t[2][b[off + 5] & 0xFF]
+                            ^ t[1][b[off + 6] & 0xFF] ^ t[0][b[off + 7] & 0xFF];
+                }
+            }
+            for (final int end = off + (len & 7); off < end; off++) {
+                c = (c >>> 8) ^ t[0][(c ^ b[off]) & 0xFF];
+            }
+            crc = c;
+        }
+
+        @Override
+        public long getValue() {
+            return wide ? (crc ^ xorOut) & 0xFFFFFFFFL : (crc ^ xorOut) & 0xFFFF;
+        }
+    }
+    //endregion
+
+    //region Tables
+    private static final class CcittTables {
+        static final int[][] TABLES = new int[8][256];
+
+        static {
+            for (int i = 0; i < 256; i++) {
+                int c = i << 8;
+                for (int k = 0; k < 8; k++) {
+                    c = (c & 0x8000) != 0 ? (c << 1) ^ 0x1021 : c << 1;
+                }
+                TABLES[0][i] = c & 0xFFFF;
+            }
+            for (int i = 0; i < 256; i++) {
+                for (int k = 1; k < 8; k++) {
+                    final int c = TABLES[k - 1][i];
+                    TABLES[k][i] = ((c << 8) ^ TABLES[0][c >>> 8]) & 0xFFFF;
+                }
+            }
+        }
+    }
+
+    private static final class ModbusTables {
+        static final int[][] TABLES = reflectedTables(0xA001);
+    }
+
+    private static final class Crc32cTables {
+        static final int[][] TABLES = reflectedTables(0x82F63B78);
+    }
+
+    private static int[][] reflectedTables(int reflectedPoly) {
+        final int[][] tables = new int[8][256];
+        for (int i = 0; i < 256; i++) {
+            int c = i;
+            for (int k = 0; k < 8; k++) {
+                c = (c & 1) != 0 ? (c >>> 1) ^ reflectedPoly : c >>> 1;
+            }
+            tables[0][i] = c;
+        }
+        for (int i = 0; i < 256; i++) {
+            for (int k = 1; k < 8; k++) {
+                final int c = tables[k - 1][i];
+                tables[k][i] = (c >>> 8) ^ tables[0][c & 0xFF];
+            }
+        }
+        return tables;
+    }
+
+    private static final class Crc32cIntrinsic {
+        static final Constructor<? extends Checksum> CONSTRUCTOR = find();
+
+        private static Constructor<? extends Checksum> find() {
+            try {
+                return Class.forName("java.util.zip.CRC32C").asSubclass(Checksum.class).getConstructor();
+            } catch (ClassNotFoundException | NoSuchMethodException | ClassCastException e) {
+                return null;
+            }
+        }
+    }
+    //endregion
+}
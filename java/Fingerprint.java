@@ -0,0 +1,498 @@
+package com.portalp.utils;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 128-bit content fingerprint of an object graph, for instance to dedupe the door configs uploads or as render cache key.
+ * <p>
+ * The graph is fed to a streaming MurmurHash3 (x64, 128 bits):
+ * <ul>
+ * <li>the fields of each class ({@link JavaUtils#getInstanceFields(Class)}) are hashed in a stable order, superclasses last and by name within
+ * a class, so that the fingerprint does not depend on the reflection order and is stable across runs,</li>
+ * <li>primitive fields are read with {@link Field#getInt(Object)}... and hashed without boxing,</li>
+ * <li>each value is preceded by a type tag, so that null, empty and zero values differ, as well as boxed numbers of different types
+ * ({@link Integer} 1 and {@link Long} 1),</li>
+ * <li>the transient fields are excluded, so that the fingerprint does not change when a cached hash code is computed,</li>
+ * <li>the JDK objects whose fields cannot all be read by reflection (Java 9+, see {@link JavaUtils#hasInaccessibleFields(Class)}) are hashed
+ * from their {@link Object#toString()}, e.g. {@link StringBuilder} or {@link java.util.concurrent.atomic.AtomicInteger},</li>
+ * <li>{@link Set}s and {@link Map}s are combined independently of their iteration order.</li>
+ * </ul>
+ * The class names are part of the fingerprint: it changes if they are obfuscated differently.
+ * <p>
+ * The whole graph is hashed: a graph nested deeper than {@link #MAX_DEPTH} is rejected rather than partially hashed, since two graphs differing
+ * beyond the cap would get the same fingerprint.
+ */
+public final class Fingerprint {
+
+    /**
+     * Max nesting depth of the hashed graphs, bounding the recursion.
+     */
+    public static final int MAX_DEPTH = 512;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_BOOLEAN = 1;
+    private static final byte TAG_NUMBER = 2;
+    private static final byte TAG_CHAR = 3;
+    private static final byte TAG_STRING = 4;
+    private static final byte TAG_ENUM = 5;
+    private static final byte TAG_ARRAY = 6;
+    private static final byte TAG_LIST = 7;
+    private static final byte TAG_UNORDERED = 8;
+    private static final byte TAG_OBJECT = 9;
+    private static final byte TAG_CYCLE = 10;
+    private static final byte TAG_VALUE = 11;
+
+    // Following TAG_NUMBER
+    private static final byte NUMBER_BYTE = 1;
+    private static final byte NUMBER_SHORT = 2;
+    private static final byte NUMBER_INT = 3;
+    private static final byte NUMBER_LONG = 4;
+    private static final byte NUMBER_FLOAT = 5;
+    private static final byte NUMBER_DOUBLE = 6;
+
+    private static final ConcurrentHashMap<Class<?>, Field[]> FIELDS = new ConcurrentHashMap<>();
+
+    public final long high;
+    public final long low;
+
+    private Fingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * @param o the root of the object graph, may be null
+     * @return the fingerprint of its content
+     * @throws IllegalArgumentException if the graph is nested deeper than {@link #MAX_DEPTH}
+     */
+    public static Fingerprint of(Object o) {
+        final Murmur3 hasher = new Murmur3();
+        new Walker(hasher).hash(o, 0);
+        return hasher.finish();
+    }
+
+    /**
+     * @return the 64-bit fingerprint, for 64-bit keys
+     */
+    public long asLong() {
+        return high;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Fingerprint)) {
+            return false;
+        }
+        final Fingerprint other = (Fingerprint) o;
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (high ^ (high >>> 32));
+    }
+
+    /**
+     * @return the 32 hexadecimal digits of the fingerprint
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(32);
+        appendHex(sb, high);
+        appendHex(sb, low);
+        return sb.toString();
+    }
+
+    private static void appendHex(StringBuilder sb, long value) {
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            sb.append(Character.forDigit((int) (value >>> shift) & 0xF, 16));
+        }
+    }
+
+    //region Graph walk
+    private static final class Walker {
+
+        private final Murmur3 hasher;
+        private final Map<Object, Integer> visiting = new IdentityHashMap<>();
+
+        Walker(Murmur3 hasher) {
+            this.hasher = hasher;
+        }
+
+        void hash(Object o, int depth) {
+            if (o == null) {
+                hasher.putByte(TAG_NULL);
+                return;
+            }
+            final Class<?> type = o.getClass();
+            if (o instanceof String) {
+                hasher.putByte(TAG_STRING);
+                hasher.putString((String) o);
+            } else if (o instanceof Number && type.getName().startsWith("java.lang.")) {
+                hasher.putByte(TAG_NUMBER);
+                hasher.putByte(numberType(o));
+                if (o instanceof Float || o instanceof Double) {
+                    hasher.putLong(Double.doubleToLongBits(((Number) o).doubleValue()));
+                } else {
+                    hasher.putLong(((Number) o).longValue());
+                }
+            } else if (o instanceof Boolean) {
+                hasher.putByte(TAG_BOOLEAN);
+                hasher.putByte((Boolean) o ? (byte) 1 : 0);
+            } else if (o instanceof Character) {
+                hasher.putByte(TAG_CHAR);
+                hasher.putChar((Character) o);
+            } else if (o instanceof Enum) {
+                hasher.putByte(TAG_ENUM);
+                hasher.putString(((Enum<?>) o).getDeclaringClass().getName());
+                hasher.putString(((Enum<?>) o).name());
+            } else if (o instanceof Date) {
+                hasher.putByte(TAG_VALUE);
+                hasher.putLong(((Date) o).getTime());
+            } else if (!type.isArray() && !(o instanceof Collection) && !(o instanceof Map)
+                    && (ObjectDiff.isValueType(type) || JavaUtils.hasInaccessibleFields(type))) {
+                // Other JDK values (BigDecimal, UUID...): their string form is part of their contract
+                // JDK internals hidden from reflection (StringBuilder, AtomicInteger...): their string form is their only readable content
+                hasher.putByte(TAG_VALUE);
+                hasher.putString(type.getName());
+                hasher.putString(o.toString());
+            } else {
+                hashComposite(o, type, depth);
+            }
+        }
+
+        /**
+         * @return the type tag of a {@code java.lang} boxed number
+         */
+        private static byte numberType(Object number) {
+            if (number instanceof Integer) {
+                return NUMBER_INT;
+            } else if (number instanceof Long) {
+                return NUMBER_LONG;
+            } else if (number instanceof Double) {
+                return NUMBER_DOUBLE;
+            } else if (number instanceof Float) {
+                return NUMBER_FLOAT;
+            } else if (number instanceof Short) {
+                return NUMBER_SHORT;
+            } else {
+                return NUMBER_BYTE;
+            }
+        }
+
+        private void hashComposite(Object o, Class<?> type, int depth) {
+            final Integer seen = visiting.get(o);
+            if (seen != null) {
+                // Back reference: hashed as the depth of the object it points to
+                hasher.putByte(TAG_CYCLE);
+                hasher.putInt(seen);
+                return;
+            }
+            if (depth >= MAX_DEPTH) {
+                throw new IllegalArgumentException("Object graph deeper than " + MAX_DEPTH);
+            }
+            visiting.put(o, depth);
+            try {
+                if (type.isArray()) {
+                    hashArray(o, type.getComponentType(), depth);
+                } else if (o instanceof Map) {
+                    hashUnordered(((Map<?, ?>) o).entrySet(), depth);
+                } else if (o instanceof Set) {
+                    hashUnordered((Set<?>) o, depth);
+                } else if (o instanceof Collection) {
+                    hasher.putByte(TAG_LIST);
+                    hasher.putInt(((Collection<?>) o).size());
+                    for (Object element : (Collection<?>) o) {
+                        hash(element, depth + 1);
+                    }
+                } else {
+                    hashFields(o, type, depth);
+                }
+            } finally {
+                visiting.remove(o);
+            }
+        }
+
+        private void hashFields(Object o, Class<?> type, int depth) {
+            hasher.putByte(TAG_OBJECT);
+            hasher.putString(type.getName());
+            for (Field field : getFields(type)) {
+                try {
+                    final Class<?> fieldType = field.getType();
+                    if (fieldType == int.class) {
+                        hasher.putInt(field.getInt(o));
+                    } else if (fieldType == long.class) {
+                        hasher.putLong(field.getLong(o));
+                    } else if (fieldType == boolean.class) {
+                        hasher.putByte(field.getBoolean(o) ? (byte) 1 : 0);
+                    } else if (fieldType == double.class) {
+                        hasher.putLong(Double.doubleToLongBits(field.getDouble(o)));
+                    } else if (fieldType == float.class) {
+                        hasher.putInt(Float.floatToIntBits(field.getFloat(o)));
+                    } else if (fieldType == short.class) {
+                        hasher.putInt(field.getShort(o));
+                    } else if (fieldType == byte.class) {
+                        hasher.putByte(field.getByte(o));
+                    } else if (fieldType == char.class) {
+                        hasher.putChar(field.getChar(o));
+                    } else {
+                        hash(field.get(o), depth + 1);
+                    }
+                } catch (IllegalAccessException e) {
+                    // Made accessible by JavaUtils#getInstanceFields
+                    hasher.putByte(TAG_NULL);
+                }
+            }
+        }
+
+        private void hashArray(Object array, Class<?> componentType, int depth) {
+            final int length = Array.getLength(array);
+            hasher.putByte(TAG_ARRAY);
+            hasher.putInt(length);
+            if (componentType == byte.class) {
+                hasher.putBytes((byte[]) array);
+            } else if (componentType == int.class) {
+                for (int v : (int[]) array) {
+                    hasher.putInt(v);
+                }
+            } else if (componentType == long.class) {
+                for (long v : (long[]) array) {
+                    hasher.putLong(v);
+                }
+            } else if (componentType == char.class) {
+                for (char v : (char[]) array) {
+                    hasher.putChar(v);
+                }
+            } else if (componentType == double.class) {
+                for (double v : (double[]) array) {
+                    hasher.putLong(Double.doubleToLongBits(v));
+                }
+            } else if (componentType == float.class) {
+                for (float v : (float[]) array) {
+                    hasher.putInt(Float.floatToIntBits(v));
+                }
+            } else if (componentType == short.class) {
+                for (short v : (short[]) array) {
+                    hasher.putInt(v);
+                }
+            } else if (componentType == boolean.class) {
+                for (boolean v : (boolean[]) array) {
+                    hasher.putByte(v ? (byte) 1 : 0);
+                }
+            } else {
+                for (Object v : (Object[]) array) {
+                    hash(v, depth + 1);
+                }
+            }
+        }
+
+        /**
+         * Hashes each element separately, then combines the element hashes with commutative sums.
+         */
+        private void hashUnordered(Collection<?> elements, int depth) {
+            long sumHigh = 0;
+            long sumLow = 0;
+            long xorHigh = 0;
+            for (Object element : elements) {
+                final Murmur3 elementHasher = new Murmur3();
+                final Walker walker = new Walker(elementHasher);
+                walker.visiting.putAll(visiting);
+                if (element instanceof Map.Entry) {
+                    walker.hash(((Map.Entry<?, ?>) element).getKey(), depth + 1);
+                    walker.hash(((Map.Entry<?, ?>) element).getValue(), depth + 1);
+                } else {
+                    walker.hash(element, depth + 1);
+                }
+                final Fingerprint f = elementHasher.finish();
+                sumHigh += f.high;
+                sumLow += f.low;
+                xorHigh ^= f.high;
+            }
+            hasher.putByte(TAG_UNORDERED);
+            hasher.putInt(elements.size());
+            hasher.putLong(sumHigh);
+            hasher.putLong(sumLow);
+            hasher.putLong(xorHigh);
+        }
+    }
+
+    /**
+     * @return the instance fields of the class, superclasses last, sorted by name within each class
+     */
+    private static Field[] getFields(Class<?> type) {
+        Field[] fields = FIELDS.get(type);
+        if (fields == null) {
+            final List<Field> sorted = new ArrayList<>(JavaUtils.getInstanceFields(type));
+            Collections.sort(sorted, new Comparator<Field>() {
+                @Override
+                public int compare(Field a, Field b) {
+                    final int depthA = hierarchyDepth(a.getDeclaringClass());
+                    final int depthB = hierarchyDepth(b.getDeclaringClass());
+                    if (depthA != depthB) {
+                        return depthB - depthA;
+                    }
+                    return a.getName().compareTo(b.getName());
+                }
+            });
+            fields = sorted.toArray(new Field[0]);
+            final Field[] previous = FIELDS.putIfAbsent(type, fields);
+            if (previous != null) {
+                fields = previous;
+            }
+        }
+        return fields;
+    }
+
+    private static int hierarchyDepth(Class<?> type) {
+        int depth = 0;
+        for (Class<?> c = type.getSuperclass(); c != null; c = c.getSuperclass()) {
+            depth++;
+        }
+        return depth;
+    }
+    //endregion
+
+    //region MurmurHash3 x64 128
+    /**
+     * Streaming MurmurHash3 x64 128 bits (seed 0): the input is buffered by blocks of 16 bytes, little-endian.
+     */
+    public static final class Murmur3 {
+
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        private final byte[] block = new byte[16];
+        private int blockLength;
+        private long h1;
+        private long h2;
+        private long length;
+
+        public Murmur3 putByte(byte b) {
+            block[blockLength++] = b;
+            if (blockLength == 16) {
+                processBlock();
+            }
+            return this;
+        }
+
+        public Murmur3 putBytes(byte[] bytes) {
+            for (byte b : bytes) {
+                putByte(b);
+            }
+            return this;
+        }
+
+        public Murmur3 putChar(char c) {
+            putByte((byte) c);
+            return putByte((byte) (c >>> 8));
+        }
+
+        public Murmur3 putInt(int v) {
+            for (int i = 0; i < 4; i++) {
+                putByte((byte) (v >>> (i * 8)));
+            }
+            return this;
+        }
+
+        public Murmur3 putLong(long v) {
+            for (int i = 0; i < 8; i++) {
+                putByte((byte) (v >>> (i * 8)));
+            }
+            return this;
+        }
+
+        /**
+         * Hashes the length then the UTF-16 chars of the string.
+         */
+        public Murmur3 putString(String s) {
+            putInt(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                putChar(s.charAt(i));
+            }
+            return this;
+        }
+
+        private void processBlock() {
+            final long k1 = getLong(block, 0);
+            final long k2 = getLong(block, 8);
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+            length += 16;
+            blockLength = 0;
+        }
+
+        public Fingerprint finish() {
+            long k1 = 0;
+            long k2 = 0;
+            for (int i = blockLength - 1; i >= 8; i--) {
+                k2 = (k2 << 8) | (block[i] & 0xFF);
+            }
+            for (int i = Math.min(blockLength, 8) - 1; i >= 0; i--) {
+                k1 = (k1 << 8) | (block[i] & 0xFF);
+            }
+            h1 ^= mixK1(k1);
+            h2 ^= mixK2(k2);
+            length += blockLength;
+
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+            return new Fingerprint(h1, h2);
+        }
+
+        private static long getLong(byte[] b, int offset) {
+            long v = 0;
+            for (int i = 7; i >= 0; i--) {
+                v = (v << 8) | (b[offset + i] & 0xFF);
+            }
+            return v;
+        }
+
+        private static long mixK1(long k1) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            return k1 * C2;
+        }
+
+        private static long mixK2(long k2) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            return k2 * C1;
+        }
+
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+    //endregion
+}
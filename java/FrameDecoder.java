@@ -0,0 +1,452 @@
+package com.portalp.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Streaming decoder of the frames of a door-controller byte stream (serial, BLE...).
+ * <p>
+ * The bytes are accumulated in a single reusable {@link ByteBuffer}, cut into frames, validated with a CRC, then dispatched to the
+ * {@link Handler} registered for their message type:
+ * <ul>
+ * <li>{@link Framing#LENGTH_PREFIX}: [type: 1 byte][payload length: {@link Builder#setLengthFieldSize(int)} bytes][payload][CRC],</li>
+ * <li>{@link Framing#DELIMITER}: [type: 1 byte][payload][CRC][delimiter], byte-stuffed like HDLC: the delimiter and escape bytes of the frame are
+ * sent as [escape][byte ^ 0x20], so that any payload can be sent. The frames are unstuffed in place.</li>
+ * </ul>
+ * The CRC covers the (unstuffed) frame from its type to the end of its payload.
+ * <p>
+ * The payload is handed out as a read-only view of the buffer, limited to the frame: nothing is copied nor allocated per frame. The view is only
+ * valid during the {@link Handler#onFrame(int, ByteBuffer)} call. Invalid frames are skipped byte per byte until the stream resynchronizes, and
+ * counted in the {@link Stats}.
+ * <p>
+ * The decoded bytes are compacted to the start of the buffer (rather than wrapping around), so that each frame is contiguous in the buffer.
+ * <p>
+ * Not thread-safe: feed a decoder from a single thread.
+ */
+public class FrameDecoder {
+
+    /**
+     * Default escape byte of the delimited frames, as in HDLC.
+     */
+    public static final byte DEFAULT_ESCAPE = 0x7D;
+    private static final int ESCAPE_XOR = 0x20;
+
+    public enum Framing {
+        LENGTH_PREFIX,
+        DELIMITER
+    }
+
+    /**
+     * Receives the frames of a message type.
+     */
+    public interface Handler {
+        /**
+         * @param type    the message type, 0 to 255
+         * @param payload read-only view of the payload, between its position and limit. Must not be kept after the call.
+         */
+        void onFrame(int type, ByteBuffer payload);
+    }
+
+    /**
+     * Decoding statistics, reset by {@link #reset()}.
+     */
+    public static class Stats {
+        private long frames;
+        private long unhandledFrames;
+        private long crcErrors;
+        private long malformedFrames;
+        private long droppedBytes;
+
+        public long getFrames() {
+            return frames;
+        }
+
+        public long getUnhandledFrames() {
+            return unhandledFrames;
+        }
+
+        public long getCrcErrors() {
+            return crcErrors;
+        }
+
+        public long getMalformedFrames() {
+            return malformedFrames;
+        }
+
+        public long getDroppedBytes() {
+            return droppedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "frames=" + frames + ", unhandled=" + unhandledFrames + ", crcErrors=" + crcErrors + ", malformed=" + malformedFrames + ", droppedBytes=" + droppedBytes;
+        }
+    }
+
+    private final Framing framing;
+    private final int lengthFieldSize;
+    private final byte delimiter;
+    private final byte escape;
+    private final int maxPayloadSize;
+    private final Checksum checksum;
+    private final int crcSize;
+    private final ByteOrder crcOrder;
+
+    private final ByteBuffer buffer;
+    private final byte[] array;
+    private final ByteBuffer view;
+    private final Handler[] handlers = new Handler[256];
+    private Handler defaultHandler;
+    private final Stats stats = new Stats();
+
+    // Pending bytes are [readIndex, writeIndex[, the delimiter is searched from scanIndex
+    private int readIndex;
+    private int writeIndex;
+    private int scanIndex;
+    // Set after an invalid frame, until the next valid one: the errors met while skipping are not counted again
+    private boolean resyncing;
+
+    public static class Builder {
+        private Framing framing = Framing.LENGTH_PREFIX;
+        private int lengthFieldSize = 2;
+        private byte delimiter;
+        private byte escape = DEFAULT_ESCAPE;
+        private int maxPayloadSize = 1024;
+        private Checksum checksum = new CRC32();
+        private int crcSize = 4;
+        private ByteOrder crcOrder = ByteOrder.BIG_ENDIAN;
+
+        /**
+         * Length-prefixed frames, the length being a big-endian unsigned int of 1, 2 (default) or 4 bytes.
+         */
+        public Builder setLengthFieldSize(int lengthFieldSize) {
+            if (lengthFieldSize != 1 && lengthFieldSize != 2 && lengthFieldSize != 4) {
+                throw new IllegalArgumentException("lengthFieldSize must be 1, 2 or 4");
+            }
+            this.framing = Framing.LENGTH_PREFIX;
+            this.lengthFieldSize = lengthFieldSize;
+            return this;
+        }
+
+        /**
+         * Frames terminated by the given delimiter byte, stuffed with the {@link #DEFAULT_ESCAPE} byte.
+         */
+        public Builder setDelimiter(byte delimiter) {
+            return setDelimiter(delimiter, DEFAULT_ESCAPE);
+        }
+
+        /**
+         * Frames terminated by the given delimiter byte, stuffed with the given escape byte.
+         */
+        public Builder setDelimiter(byte delimiter, byte escape) {
+            if ((delimiter ^ escape) == 0 || (delimiter ^ escape) == ESCAPE_XOR) {
+                throw new IllegalArgumentException("the delimiter, the escape and their escaped values must differ");
+            }
+            this.framing = Framing.DELIMITER;
+            this.delimiter = delimiter;
+            this.escape = escape;
+            return this;
+        }
+
+        /**
+         * Bigger frames are dropped. Default 1024 bytes.
+         */
+        public Builder setMaxPayloadSize(int maxPayloadSize) {
+            this.maxPayloadSize = maxPayloadSize;
+            return this;
+        }
+
+        /**
+         * @param checksum the algorithm, {@link CRC32} by default, reset before each frame
+         * @param size     the number of CRC bytes in the frames (the low bytes of {@link Checksum#getValue()}), 0 to disable the validation
+         * @param order    the byte order of the CRC in the frames
+         */
+        public Builder setChecksum(Checksum checksum, int size, ByteOrder order) {
+            if (size < 0 || size > 8) {
+                throw new IllegalArgumentException("size must be 0 to 8");
+            }
+            this.checksum = checksum;
+            this.crcSize = size;
+            this.crcOrder = order;
+            return this;
+        }
+
+        public FrameDecoder build() {
+            return new FrameDecoder(this);
+        }
+    }
+
+    private FrameDecoder(Builder builder) {
+        framing = builder.framing;
+        lengthFieldSize = builder.lengthFieldSize;
+        delimiter = builder.delimiter;
+        escape = builder.escape;
+        maxPayloadSize = builder.maxPayloadSize;
+        checksum = builder.checksum;
+        crcSize = builder.crcSize;
+        crcOrder = builder.crcOrder;
+
+        // Room for a full frame plus the next incoming chunk, a stuffed frame being up to twice as big
+        final int maxFrameSize = framing == Framing.DELIMITER
+                ? 2 * (1 + maxPayloadSize + crcSize) + 1
+                : 1 + lengthFieldSize + maxPayloadSize + crcSize + 1;
+        buffer = ByteBuffer.allocate(maxFrameSize * 2);
+        array = buffer.array();
+        view = buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Registers the handler of the given message type, replacing the previous one.
+     *
+     * @param type    the message type, 0 to 255
+     * @param handler the {@link Handler}, or null to unregister
+     */
+    public void setHandler(int type, Handler handler) {
+        handlers[type & 0xFF] = handler;
+    }
+
+    /**
+     * Registers the handler of the message types without a handler.
+     */
+    public void setDefaultHandler(Handler handler) {
+        defaultHandler = handler;
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * Drops the pending bytes and resets the statistics, for instance on reconnection.
+     */
+    public void reset() {
+        readIndex = writeIndex = scanIndex = 0;
+        resyncing = false;
+        stats.frames = stats.unhandledFrames = stats.crcErrors = stats.malformedFrames = stats.droppedBytes = 0;
+    }
+
+    //region Feeding
+    /**
+     * Appends the given bytes to the stream and dispatches the complete frames.
+     */
+    public void feed(byte[] data, int offset, int length) {
+        while (length > 0) {
+            final int chunk = Math.min(length, makeRoom());
+            System.arraycopy(data, offset, array, writeIndex, chunk);
+            writeIndex += chunk;
+            offset += chunk;
+            length -= chunk;
+            decode();
+        }
+    }
+
+    public void feed(byte[] data) {
+        feed(data, 0, data.length);
+    }
+
+    /**
+     * Appends the remaining bytes of the given buffer to the stream and dispatches the complete frames.
+     */
+    public void feed(ByteBuffer data) {
+        while (data.hasRemaining()) {
+            final int chunk = Math.min(data.remaining(), makeRoom());
+            data.get(array, writeIndex, chunk);
+            writeIndex += chunk;
+            decode();
+        }
+    }
+
+    /**
+     * Reads the stream until its end, for instance a recorded fixture, reading directly into the decoder buffer.
+     *
+     * @throws IOException if the stream could not be read
+     */
+    public void feed(InputStream in) throws IOException {
+        while (true) {
+            // makeRoom() may move writeIndex
+            final int room = makeRoom();
+            final int read = in.read(array, writeIndex, room);
+            if (read == -1) {
+                return;
+            }
+            writeIndex += read;
+            decode();
+        }
+    }
+
+    /**
+     * Moves the pending bytes to the start of the buffer if needed.
+     *
+     * @return the free space after the pending bytes
+     */
+    private int makeRoom() {
+        if (writeIndex == array.length) {
+            if (readIndex == 0) {
+                // A frame cannot be that big: the stream is desynchronized
+                stats.droppedBytes += writeIndex;
+                writeIndex = scanIndex = 0;
+            } else {
+                final int pending = writeIndex - readIndex;
+                System.arraycopy(array, readIndex, array, 0, pending);
+                scanIndex -= readIndex;
+                readIndex = 0;
+                writeIndex = pending;
+            }
+        }
+        return array.length - writeIndex;
+    }
+    //endregion
+
+    //region Decoding
+    private void decode() {
+        if (framing == Framing.LENGTH_PREFIX) {
+            decodeLengthPrefixed();
+        } else {
+            decodeDelimited();
+        }
+        if (readIndex == writeIndex) {
+            readIndex = writeIndex = scanIndex = 0;
+        }
+    }
+
+    private void decodeLengthPrefixed() {
+        final int headerSize = 1 + lengthFieldSize;
+        while (writeIndex - readIndex >= headerSize) {
+            long length = 0;
+            for (int i = 1; i <= lengthFieldSize; i++) {
+                length = (length << 8) | (array[readIndex + i] & 0xFF);
+            }
+            if (length > maxPayloadSize) {
+                onError(false);
+                skipByte();
+                continue;
+            }
+            final int frameSize = headerSize + (int) length + crcSize;
+            if (writeIndex - readIndex < frameSize) {
+                return;
+            }
+            if (dispatch(readIndex, readIndex + headerSize, readIndex + headerSize + (int) length)) {
+                readIndex += frameSize;
+            } else {
+                skipByte();
+            }
+        }
+    }
+
+    private void decodeDelimited() {
+        if (scanIndex < readIndex) {
+            scanIndex = readIndex;
+        }
+        for (; scanIndex < writeIndex; scanIndex++) {
+            if (array[scanIndex] != delimiter) {
+                continue;
+            }
+            final int frameSize = scanIndex - readIndex;
+            if (frameSize == 0) {
+                // Consecutive delimiters
+                readIndex = scanIndex + 1;
+                continue;
+            }
+            final int frameEnd = frameSize > 2 * (1 + maxPayloadSize + crcSize) ? -1 : unstuff(readIndex, scanIndex);
+            final int unstuffedSize = frameEnd - readIndex;
+            if (frameEnd < 0 || unstuffedSize < 1 + crcSize || unstuffedSize > 1 + maxPayloadSize + crcSize) {
+                onError(false);
+                stats.droppedBytes += frameSize;
+            } else if (!dispatch(readIndex, readIndex + 1, frameEnd - crcSize)) {
+                stats.droppedBytes += frameSize;
+            }
+            readIndex = scanIndex + 1;
+        }
+    }
+
+    /**
+     * Removes the byte stuffing of the frame in place, the unstuffed frame starting at the same index.
+     *
+     * @return the end of the unstuffed frame, or -1 if the stuffing is invalid
+     */
+    private int unstuff(int start, int end) {
+        int write = start;
+        for (int read = start; read < end; read++) {
+            byte b = array[read];
+            if (b == escape) {
+                if (++read == end) {
+                    return -1;
+                }
+                b = (byte) (array[read] ^ ESCAPE_XOR);
+                if (b != delimiter && b != escape) {
+                    return -1;
+                }
+            }
+            array[write++] = b;
+        }
+        return write;
+    }
+
+    /**
+     * Validates the frame CRC, then dispatches its payload.
+     *
+     * @return <b>false</b> if the CRC is invalid
+     */
+    private boolean dispatch(int frameStart, int payloadStart, int payloadEnd) {
+        if (crcSize > 0) {
+            checksum.reset();
+            checksum.update(array, frameStart, payloadEnd - frameStart);
+            if (readCrc(payloadEnd) != (checksum.getValue() & crcMask())) {
+                onError(true);
+                return false;
+            }
+        }
+        resyncing = false;
+        final int type = array[frameStart] & 0xFF;
+        Handler handler = handlers[type];
+        if (handler == null) {
+            handler = defaultHandler;
+        }
+        stats.frames++;
+        if (handler == null) {
+            stats.unhandledFrames++;
+            return true;
+        }
+        view.clear();
+        view.position(payloadStart);
+        view.limit(payloadEnd);
+        handler.onFrame(type, view);
+        return true;
+    }
+
+    private long readCrc(int offset) {
+        long crc = 0;
+        for (int i = 0; i < crcSize; i++) {
+            final int index = crcOrder == ByteOrder.BIG_ENDIAN ? offset + i : offset + crcSize - 1 - i;
+            crc = (crc << 8) | (array[index] & 0xFF);
+        }
+        return crc;
+    }
+
+    private long crcMask() {
+        return crcSize == 8 ? -1L : (1L << (crcSize * 8)) - 1;
+    }
+
+    private void onError(boolean crc) {
+        if (resyncing) {
+            return;
+        }
+        if (crc) {
+            stats.crcErrors++;
+        } else {
+            stats.malformedFrames++;
+        }
+        // Only relevant to the length-prefixed frames, the delimited ones resynchronize on the next delimiter
+        resyncing = framing == Framing.LENGTH_PREFIX;
+    }
+
+    private void skipByte() {
+        readIndex++;
+        stats.droppedBytes++;
+    }
+    //endregion
+}
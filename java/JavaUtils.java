@@ -1,87 +1,41 @@
 package com.portalp.utils;
 
-import static android.graphics.Color.BLACK;
-import static android.graphics.Color.WHITE;
-
-import android.annotation.SuppressLint;
-import android.annotation.TargetApi;
-import android.app.Activity;
-import android.content.Context;
-import android.content.ContextWrapper;
-import android.content.pm.PackageManager;
-import android.content.res.Resources;
-import android.graphics.Bitmap;
-import android.graphics.Color;
-import android.graphics.Point;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffColorFilter;
-import android.graphics.drawable.Drawable;
-import android.net.Uri;
-import android.os.Build;
-import android.os.Environment;
-import android.os.Looper;
-import android.os.PowerManager;
-import android.provider.Settings;
-import android.text.InputFilter;
-import android.text.Spanned;
-import android.util.DisplayMetrics;
-import android.util.Log;
-import android.view.Display;
-import android.view.View;
-import android.view.ViewGroup;
-import android.view.ViewParent;
-import android.view.WindowManager;
-import android.view.inputmethod.InputMethodManager;
-import android.widget.TextView;
-
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.core.app.ActivityCompat;
-import androidx.core.content.ContextCompat;
-
-import com.google.firebase.crashlytics.buildtools.reloc.javax.annotation.Nonnull;
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.MultiFormatWriter;
-import com.google.zxing.WriterException;
-import com.google.zxing.common.BitMatrix;
-
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.security.SecureRandom;
-import java.security.cert.X509Certificate;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
-import java.util.Objects;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
-
 /**
  * Helper class offering static util methods.
+ * <p>
+ * Pure JVM (utils-core): must not depend on the Android framework nor on third-party libraries, see {@code AndroidUtils} and {@code QrCodeUtils}.
  */
 public class JavaUtils {
 
     private static final String TAG = JavaUtils.class.getSimpleName();
+    private static final Logger LOGGER = Logger.getLogger(TAG);
+
+    private static final ConcurrentHashMap<Class<?>, List<Field>> INSTANCE_FIELDS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Class<?>, Boolean> INACCESSIBLE_FIELDS = new ConcurrentHashMap<>();
+
+    private static final UtilsMetrics.Timer RUN_GETTER_TIMER = UtilsMetrics.timer("JavaUtils.runGetter");
 
     //region Objects & introspection
 
@@ -106,13 +60,22 @@ public class JavaUtils {
      * @return the result of the method invoked from the Object
      */
     public static Object runGetter(Object o, String fieldName) {
+        final long start = RUN_GETTER_TIMER.start();
+        try {
+            return _runGetter(o, fieldName);
+        } finally {
+            RUN_GETTER_TIMER.stop(start);
+        }
+    }
+
+    private static Object _runGetter(Object o, String fieldName) {
         for (Method method : o.getClass().getMethods()) {
             if ((method.getName().startsWith("get")) && (method.getName().length() == (fieldName.length() + 3))) {
                 if (method.getName().toLowerCase(Locale.getDefault()).endsWith(fieldName.toLowerCase())) {
                     try {
                         return method.invoke(o);
                     } catch (IllegalAccessException | InvocationTargetException | NullPointerException | IllegalArgumentException e) {
-                        Log.d(TAG, "Could not determine method: " + method.getName());
+                        LOGGER.log(Level.FINE, "Could not determine method: " + method.getName());
                     }
                 }
             }
@@ -130,6 +93,53 @@ public class JavaUtils {
         return _getAllFields(new LinkedList<>(), type);
     }
 
+    /**
+     * Returns the instance fields of a given {@link Class} and its superclasses (static, transient and synthetic fields excluded), made accessible.<br/>
+     * Resolved once per class: the returned list is shared and unmodifiable.<br/>
+     * The fields which cannot be made accessible (e.g. JDK internals on Java 9+) are skipped, see {@link #hasInaccessibleFields(Class)}.
+     *
+     * @param type given {@link Class}
+     * @return the cached list of the class instance fields
+     */
+    public static List<Field> getInstanceFields(Class<?> type) {
+        List<Field> fields = INSTANCE_FIELDS.get(type);
+        if (fields == null) {
+            final List<Field> resolved = new ArrayList<>();
+            boolean inaccessible = false;
+            for (Field field : getAllFields(type)) {
+                // Transient fields are derived state (e.g. cached hash codes), not part of the object value
+                if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()) && !field.isSynthetic()) {
+                    try {
+                        field.setAccessible(true);
+                    } catch (RuntimeException e) {
+                        // Not accessible (e.g. JDK internals): skipped
+                        inaccessible = true;
+                        continue;
+                    }
+                    resolved.add(field);
+                }
+            }
+            fields = Collections.unmodifiableList(resolved);
+            // Published first: visible to whoever sees the fields
+            INACCESSIBLE_FIELDS.putIfAbsent(type, inaccessible);
+            final List<Field> previous = INSTANCE_FIELDS.putIfAbsent(type, fields);
+            if (previous != null) {
+                fields = previous;
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * @param type given {@link Class}
+     * @return <b>true</b> if some instance fields of the class could not be made accessible, and are missing from
+     * {@link #getInstanceFields(Class)}: the class content cannot be fully read by reflection
+     */
+    public static boolean hasInaccessibleFields(Class<?> type) {
+        getInstanceFields(type);
+        return INACCESSIBLE_FIELDS.get(type);
+    }
+
     /**
      * Recursive part of {@link #getAllFields(Class)}.
      *
@@ -319,27 +329,23 @@ public class JavaUtils {
         return bytes;
     }
 
+    /**
+     * Kept for the callers not migrated yet: utils-core does not depend on Android nor ZXing, so the utils-qr implementation is called through
+     * reflection, and the returned {@code android.graphics.Bitmap} type is inferred at the call site.
+     *
+     * @deprecated use {@code QrCodeUtils.encodeAsQRCode(String, int)} (utils-qr)
+     */
+    @Deprecated
+    @SuppressWarnings("unchecked")
     public static @Nullable
-    Bitmap encodeAsQRCode(String str, int size) {
-        BitMatrix result;
+    <T> T encodeAsQRCode(String str, int size) {
         try {
-            result = new MultiFormatWriter().encode(str,
-                    BarcodeFormat.QR_CODE, size, size, null);
-        } catch (IllegalArgumentException | WriterException e) {
-            return null;
-        }
-        int w = result.getWidth();
-        int h = result.getHeight();
-        int[] pixels = new int[w * h];
-        for (int y = 0; y < h; y++) {
-            int offset = y * w;
-            for (int x = 0; x < w; x++) {
-                pixels[offset + x] = result.get(x, y) ? BLACK : WHITE;
-            }
+            return (T) Class.forName("com.portalp.utils.QrCodeUtils").getMethod("encodeAsQRCode", String.class, int.class).invoke(null, str, size);
+        } catch (InvocationTargetException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("utils-qr is not on the classpath", e);
         }
-        Bitmap bitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
-        bitmap.setPixels(pixels, 0, size, 0, 0, w, h);
-        return bitmap;
     }
 
     /**
@@ -433,7 +439,7 @@ public class JavaUtils {
      * @return the formatted MAC doorId {@link String} or <b>null</b>
      */
     @Nullable
-    public static String formatMacAddress(@Nonnull String rawMac, char divisionChar) {
+    public static String formatMacAddress(@NonNull String rawMac, char divisionChar) {
         String mac = null;
         if (rawMac.length() == 17) {
             // already separated
@@ -451,7 +457,7 @@ public class JavaUtils {
      * @return the normalized MAC doorId {@link String} or <b>null</b>
      */
     @Nullable
-    public static String normalizeMacAddress(@Nonnull String formattedMac) {
+    public static String normalizeMacAddress(@NonNull String formattedMac) {
         final String mac = formattedMac.replaceAll("[^a-fA-F0-9]", "").toUpperCase();
         if (mac.length() != 12) {
             return null;
@@ -0,0 +1,367 @@
+package com.portalp.utils;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Field-level diff of two object graphs of the same class, for instance a door config loaded from disk and the one edited by the technician.
+ * <p>
+ * The fields of each class ({@link JavaUtils#getInstanceFields(Class)}, transient fields excluded) are compiled once into a comparison plan:
+ * primitive fields are compared with {@link Field#getInt(Object)}... without boxing, the JDK value types (strings, boxed numbers, dates, enums...
+ * any JDK class overriding {@link Object#equals(Object)}) with {@link Object#equals(Object)}, and the other objects, arrays, {@link List}s and
+ * {@link Map}s are walked recursively. The {@link List}s, {@link Map}s and {@link Set}s are compared whatever their implementation. The objects
+ * whose fields cannot all be read by reflection (JDK internals on Java 9+, see {@link JavaUtils#hasInaccessibleFields(Class)}) are reported as
+ * changed unless they are the same instance: a difference is never missed.
+ * <p>
+ * The result is the list of the leaf {@link Change}s, with their path (e.g. {@code doors[2].params[motorSpeed]}): only the changed values are
+ * boxed, so that it can be sent as a delta. Objects already met on the current path are not walked again (cycles). The objects nested deeper
+ * than {@link #MAX_DEPTH} are not walked either, they are reported as a single {@link Change.Type#TRUNCATED} change.
+ */
+public class ObjectDiff {
+
+    public static final int MAX_DEPTH = 32;
+
+    private static final ConcurrentHashMap<Class<?>, FieldPlan[]> PLANS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Class<?>, Boolean> VALUE_TYPES = new ConcurrentHashMap<>();
+
+    public enum Kind {
+        INT, LONG, SHORT, BYTE, CHAR, BOOLEAN, FLOAT, DOUBLE, VALUE, OBJECT
+    }
+
+    public static class Change {
+        public enum Type {
+            CHANGED,
+            ADDED,
+            REMOVED,
+            /**
+             * The objects are nested deeper than {@link #MAX_DEPTH} and were not compared: they may or may not differ.
+             */
+            TRUNCATED
+        }
+
+        public final Type type;
+        public final String path;
+        public final Object before;
+        public final Object after;
+
+        Change(Type type, String path, Object before, Object after) {
+            this.type = type;
+            this.path = path;
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + path + ": " + before + " -> " + after;
+        }
+    }
+
+    private final List<Change> changes = new ArrayList<>();
+    private final StringBuilder path = new StringBuilder();
+    private final Set<Object> visiting = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+    private ObjectDiff() {
+    }
+
+    /**
+     * Compares the two objects field by field.
+     *
+     * @param before the original object
+     * @param after  the modified object
+     * @return the leaf changes, empty if the objects are equal
+     */
+    public static List<Change> diff(Object before, Object after) {
+        final ObjectDiff diff = new ObjectDiff();
+        diff.compare(before, after, 0);
+        return diff.changes;
+    }
+
+    //region Walk
+    private void compare(Object before, Object after, int depth) {
+        if (before == after) {
+            return;
+        }
+        if (before == null || after == null) {
+            addChange(Change.Type.CHANGED, before, after);
+            return;
+        }
+        final Class<?> type = before.getClass();
+        if (type != after.getClass() && !isSameCollectionKind(before, after)) {
+            addChange(Change.Type.CHANGED, before, after);
+            return;
+        }
+        if (isValueType(type)) {
+            if (!before.equals(after)) {
+                addChange(Change.Type.CHANGED, before, after);
+            }
+            return;
+        }
+        if (depth >= MAX_DEPTH) {
+            addChange(Change.Type.TRUNCATED, before, after);
+            return;
+        }
+        if (!visiting.add(before)) {
+            return;
+        }
+        try {
+            if (type.isArray()) {
+                compareArrays(before, after, depth);
+            } else if (before instanceof List) {
+                compareLists((List<?>) before, (List<?>) after, depth);
+            } else if (before instanceof Map) {
+                compareMaps((Map<?, ?>) before, (Map<?, ?>) after, depth);
+            } else if (before instanceof Iterable) {
+                // Sets and other collections: compared as a whole
+                if (!before.equals(after)) {
+                    addChange(Change.Type.CHANGED, before, after);
+                }
+            } else if (JavaUtils.hasInaccessibleFields(type)) {
+                // Content partly hidden from reflection: distinct instances may differ
+                addChange(Change.Type.CHANGED, before, after);
+            } else {
+                compareFields(before, after, getPlan(type), depth);
+            }
+        } finally {
+            visiting.remove(before);
+        }
+    }
+
+    /**
+     * @return <b>true</b> if both objects are {@link List}s, {@link Map}s or {@link Set}s, whose equality does not depend on the implementation
+     */
+    private static boolean isSameCollectionKind(Object before, Object after) {
+        return (before instanceof List && after instanceof List)
+                || (before instanceof Map && after instanceof Map)
+                || (before instanceof Set && after instanceof Set);
+    }
+
+    private void compareFields(Object before, Object after, FieldPlan[] plan, int depth) {
+        final int length = path.length();
+        for (FieldPlan field : plan) {
+            try {
+                if (field.kind == Kind.OBJECT || field.kind == Kind.VALUE) {
+                    final Object b = field.field.get(before);
+                    final Object a = field.field.get(after);
+                    if (b != a && (field.kind == Kind.OBJECT || b == null || !b.equals(a))) {
+                        appendField(field.name);
+                        compare(b, a, depth + 1);
+                    }
+                } else if (!field.primitiveEquals(before, after)) {
+                    appendField(field.name);
+                    addChange(Change.Type.CHANGED, field.field.get(before), field.field.get(after));
+                }
+            } catch (IllegalAccessException e) {
+                // Made accessible by JavaUtils#getInstanceFields
+            }
+            path.setLength(length);
+        }
+    }
+
+    private void compareArrays(Object before, Object after, int depth) {
+        final int beforeLength = Array.getLength(before);
+        final int afterLength = Array.getLength(after);
+        final Class<?> componentType = before.getClass().getComponentType();
+        final int length = path.length();
+        for (int i = 0; i < Math.max(beforeLength, afterLength); i++) {
+            path.append('[').append(i).append(']');
+            if (i >= afterLength) {
+                addChange(Change.Type.REMOVED, Array.get(before, i), null);
+            } else if (i >= beforeLength) {
+                addChange(Change.Type.ADDED, null, Array.get(after, i));
+            } else if (componentType.isPrimitive()) {
+                if (!primitiveElementEquals(before, after, i, componentType)) {
+                    addChange(Change.Type.CHANGED, Array.get(before, i), Array.get(after, i));
+                }
+            } else {
+                compare(((Object[]) before)[i], ((Object[]) after)[i], depth + 1);
+            }
+            path.setLength(length);
+        }
+    }
+
+    private void compareLists(List<?> before, List<?> after, int depth) {
+        final int length = path.length();
+        for (int i = 0; i < Math.max(before.size(), after.size()); i++) {
+            path.append('[').append(i).append(']');
+            if (i >= after.size()) {
+                addChange(Change.Type.REMOVED, before.get(i), null);
+            } else if (i >= before.size()) {
+                addChange(Change.Type.ADDED, null, after.get(i));
+            } else {
+                compare(before.get(i), after.get(i), depth + 1);
+            }
+            path.setLength(length);
+        }
+    }
+
+    private void compareMaps(Map<?, ?> before, Map<?, ?> after, int depth) {
+        final int length = path.length();
+        for (Map.Entry<?, ?> entry : before.entrySet()) {
+            path.append('[').append(entry.getKey()).append(']');
+            if (!after.containsKey(entry.getKey())) {
+                addChange(Change.Type.REMOVED, entry.getValue(), null);
+            } else {
+                compare(entry.getValue(), after.get(entry.getKey()), depth + 1);
+            }
+            path.setLength(length);
+        }
+        for (Map.Entry<?, ?> entry : after.entrySet()) {
+            if (!before.containsKey(entry.getKey())) {
+                path.append('[').append(entry.getKey()).append(']');
+                addChange(Change.Type.ADDED, null, entry.getValue());
+                path.setLength(length);
+            }
+        }
+    }
+
+    private void appendField(String name) {
+        if (path.length() > 0) {
+            path.append('.');
+        }
+        path.append(name);
+    }
+
+    private void addChange(Change.Type type, Object before, Object after) {
+        changes.add(new Change(type, path.toString(), before, after));
+    }
+    //endregion
+
+    //region Plans
+    private static FieldPlan[] getPlan(Class<?> type) {
+        FieldPlan[] plan = PLANS.get(type);
+        if (plan == null) {
+            final List<Field> fields = JavaUtils.getInstanceFields(type);
+            plan = new FieldPlan[fields.size()];
+            for (int i = 0; i < plan.length; i++) {
+                plan[i] = new FieldPlan(fields.get(i));
+            }
+            final FieldPlan[] previous = PLANS.putIfAbsent(type, plan);
+            if (previous != null) {
+                plan = previous;
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * @return <b>true</b> for the JDK types compared with {@link Object#equals(Object)}: boxed primitives, strings, enums, dates...<br/>
+     * <b>false</b> for the JDK types keeping the identity equality ({@link Object}, {@link java.util.concurrent.atomic.AtomicInteger}...), which
+     * are walked field by field
+     */
+    static boolean isValueType(Class<?> type) {
+        Boolean valueType = VALUE_TYPES.get(type);
+        if (valueType == null) {
+            valueType = computeIsValueType(type);
+            VALUE_TYPES.putIfAbsent(type, valueType);
+        }
+        return valueType;
+    }
+
+    private static boolean computeIsValueType(Class<?> type) {
+        if (type.isPrimitive() || type.isEnum() || Enum.class.isAssignableFrom(type)) {
+            return true;
+        }
+        if (type.isArray() || type.isInterface()) {
+            return false;
+        }
+        final String name = type.getName();
+        return (name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("android."))
+                && !Iterable.class.isAssignableFrom(type) && !Map.class.isAssignableFrom(type) && overridesEquals(type);
+    }
+
+    private static boolean overridesEquals(Class<?> type) {
+        try {
+            return type.getMethod("equals", Object.class).getDeclaringClass() != Object.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static Kind kindOf(Class<?> type) {
+        if (type == int.class) {
+            return Kind.INT;
+        } else if (type == long.class) {
+            return Kind.LONG;
+        } else if (type == short.class) {
+            return Kind.SHORT;
+        } else if (type == byte.class) {
+            return Kind.BYTE;
+        } else if (type == char.class) {
+            return Kind.CHAR;
+        } else if (type == boolean.class) {
+            return Kind.BOOLEAN;
+        } else if (type == float.class) {
+            return Kind.FLOAT;
+        } else if (type == double.class) {
+            return Kind.DOUBLE;
+        } else if (isValueType(type)) {
+            return Kind.VALUE;
+        }
+        return Kind.OBJECT;
+    }
+
+    private static final class FieldPlan {
+        final Field field;
+        final String name;
+        final Kind kind;
+
+        FieldPlan(Field field) {
+            this.field = field;
+            this.name = field.getName();
+            this.kind = kindOf(field.getType());
+        }
+
+        boolean primitiveEquals(Object a, Object b) throws IllegalAccessException {
+            switch (kind) {
+                case INT:
+                    return field.getInt(a) == field.getInt(b);
+                case LONG:
+                    return field.getLong(a) == field.getLong(b);
+                case SHORT:
+                    return field.getShort(a) == field.getShort(b);
+                case BYTE:
+                    return field.getByte(a) == field.getByte(b);
+                case CHAR:
+                    return field.getChar(a) == field.getChar(b);
+                case BOOLEAN:
+                    return field.getBoolean(a) == field.getBoolean(b);
+                case FLOAT:
+                    return Float.floatToIntBits(field.getFloat(a)) == Float.floatToIntBits(field.getFloat(b));
+                case DOUBLE:
+                    return Double.doubleToLongBits(field.getDouble(a)) == Double.doubleToLongBits(field.getDouble(b));
+                default:
+                    return Objects.equals(field.get(a), field.get(b));
+            }
+        }
+    }
+
+    private static boolean primitiveElementEquals(Object a, Object b, int i, Class<?> componentType) {
+        if (componentType == int.class) {
+            return ((int[]) a)[i] == ((int[]) b)[i];
+        } else if (componentType == long.class) {
+            return ((long[]) a)[i] == ((long[]) b)[i];
+        } else if (componentType == short.class) {
+            return ((short[]) a)[i] == ((short[]) b)[i];
+        } else if (componentType == byte.class) {
+            return ((byte[]) a)[i] == ((byte[]) b)[i];
+        } else if (componentType == char.class) {
+            return ((char[]) a)[i] == ((char[]) b)[i];
+        } else if (componentType == boolean.class) {
+            return ((boolean[]) a)[i] == ((boolean[]) b)[i];
+        } else if (componentType == float.class) {
+            return Float.floatToIntBits(((float[]) a)[i]) == Float.floatToIntBits(((float[]) b)[i]);
+        } else {
+            return Double.doubleToLongBits(((double[]) a)[i]) == Double.doubleToLongBits(((double[]) b)[i]);
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,298 @@
+package com.portalp.utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streaming CSV/TSV export of beans, for instance the fault events or the door parameters.
+ * <p>
+ * The columns of a class are resolved once (its {@link JavaUtils#getInstanceFields(Class)}, read through their getter like
+ * {@link JavaUtils#runGetter(Object, String)} when there is one), then each row is written straight to a buffered UTF-8 {@link Writer}: the
+ * memory used does not depend on the number of rows. Arrays are written like {@link Arrays#toString(Object[])}.
+ * <ul>
+ * <li>{@link Format#CSV}: RFC 4180, the cells containing a separator, a quote or a line break are quoted, lines end with CRLF,</li>
+ * <li>{@link Format#TSV}: tabs, line breaks and backslashes in the cells are escaped as \t, \n, \r and \\.</li>
+ * </ul>
+ */
+public class TabularExporter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    private static final ConcurrentHashMap<Class<?>, Column[]> COLUMNS = new ConcurrentHashMap<>();
+
+    public enum Format {
+        CSV(',', "\r\n"),
+        TSV('\t', "\n");
+
+        private final char separator;
+        private final String lineSeparator;
+
+        Format(char separator, String lineSeparator) {
+            this.separator = separator;
+            this.lineSeparator = lineSeparator;
+        }
+    }
+
+    public interface ProgressListener {
+        /**
+         * Called every 1000 rows, and once at the end.
+         *
+         * @param rows  the number of rows written
+         * @param total the total number of rows, or -1 if unknown
+         */
+        void onProgress(long rows, long total);
+    }
+
+    private final Format format;
+    private final boolean header;
+
+    public TabularExporter(Format format) {
+        this(format, true);
+    }
+
+    /**
+     * @param format the {@link Format}
+     * @param header <b>true</b> to write the field names as first row
+     */
+    public TabularExporter(Format format, boolean header) {
+        this.format = format;
+        this.header = header;
+    }
+
+    /**
+     * Exports the rows to the given file, replacing it.
+     *
+     * @return the number of rows written
+     * @throws IOException           if the file could not be written
+     * @throws IllegalStateException if a getter or field of a row could not be read
+     */
+    public <T> long export(File file, Class<T> type, Iterable<? extends T> rows, ProgressListener listener) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            return export(writer, type, rows, listener);
+        }
+    }
+
+    /**
+     * Exports the rows to the given writer, which is flushed but not closed.
+     *
+     * @param writer   the {@link Writer}, preferably buffered
+     * @param type     the rows {@link Class}, defining the columns
+     * @param rows     the rows, iterated once: may be a lazy cursor
+     * @param listener the {@link ProgressListener}, or null
+     * @return the number of rows written
+     * @throws IOException           if the writer failed
+     * @throws IllegalStateException if a getter or field of a row could not be read
+     */
+    public <T> long export(Writer writer, Class<T> type, Iterable<? extends T> rows, ProgressListener listener) throws IOException {
+        final Column[] columns = getColumns(type);
+        final long total = rows instanceof Collection ? ((Collection<?>) rows).size() : -1;
+
+        if (header) {
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    writer.write(format.separator);
+                }
+                writeCell(writer, columns[i].name);
+            }
+            writer.write(format.lineSeparator);
+        }
+
+        long count = 0;
+        final Iterator<? extends T> iterator = rows.iterator();
+        while (iterator.hasNext()) {
+            final T row = iterator.next();
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    writer.write(format.separator);
+                }
+                final Object value = columns[i].get(row);
+                if (value != null) {
+                    writeCell(writer, toString(value));
+                }
+            }
+            writer.write(format.lineSeparator);
+            count++;
+            if (listener != null && count % PROGRESS_INTERVAL == 0) {
+                listener.onProgress(count, total);
+            }
+        }
+        writer.flush();
+        if (listener != null) {
+            listener.onProgress(count, total);
+        }
+        return count;
+    }
+
+    /**
+     * @return the column names of the given class, in export order
+     */
+    public static List<String> getColumnNames(Class<?> type) {
+        final List<String> names = new ArrayList<>();
+        for (Column column : getColumns(type)) {
+            names.add(column.name);
+        }
+        return names;
+    }
+
+    /**
+     * @return the cell text of the given value, with the content of the arrays rather than their identity
+     */
+    private static String toString(Object value) {
+        if (!value.getClass().isArray()) {
+            return value.toString();
+        } else if (value instanceof Object[]) {
+            return Arrays.deepToString((Object[]) value);
+        } else if (value instanceof int[]) {
+            return Arrays.toString((int[]) value);
+        } else if (value instanceof long[]) {
+            return Arrays.toString((long[]) value);
+        } else if (value instanceof byte[]) {
+            return Arrays.toString((byte[]) value);
+        } else if (value instanceof short[]) {
+            return Arrays.toString((short[]) value);
+        } else if (value instanceof char[]) {
+            return Arrays.toString((char[]) value);
+        } else if (value instanceof boolean[]) {
+            return Arrays.toString((boolean[]) value);
+        } else if (value instanceof float[]) {
+            return Arrays.toString((float[]) value);
+        } else {
+            return Arrays.toString((double[]) value);
+        }
+    }
+
+    //region Escaping
+    private void writeCell(Writer writer, String value) throws IOException {
+        if (format == Format.CSV) {
+            writeCsvCell(writer, value);
+        } else {
+            writeTsvCell(writer, value);
+        }
+    }
+
+    private static void writeCsvCell(Writer writer, String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            final char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '"') {
+                // Writes the quote twice
+                writer.write(value, start, i + 1 - start);
+                start = i;
+            }
+        }
+        writer.write(value, start, value.length() - start);
+        writer.write('"');
+    }
+
+    private static void writeTsvCell(Writer writer, String value) throws IOException {
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            final char escaped;
+            switch (c) {
+                case '\t':
+                    escaped = 't';
+                    break;
+                case '\n':
+                    escaped = 'n';
+                    break;
+                case '\r':
+                    escaped = 'r';
+                    break;
+                case '\\':
+                    escaped = '\\';
+                    break;
+                default:
+                    continue;
+            }
+            writer.write(value, start, i - start);
+            writer.write('\\');
+            writer.write(escaped);
+            start = i + 1;
+        }
+        writer.write(value, start, value.length() - start);
+    }
+    //endregion
+
+    //region Columns
+    private static Column[] getColumns(Class<?> type) {
+        Column[] columns = COLUMNS.get(type);
+        if (columns == null) {
+            final List<Field> fields = JavaUtils.getInstanceFields(type);
+            columns = new Column[fields.size()];
+            for (int i = 0; i < columns.length; i++) {
+                final Field field = fields.get(i);
+                columns[i] = new Column(field, findGetter(type, field.getName()));
+            }
+            final Column[] previous = COLUMNS.putIfAbsent(type, columns);
+            if (previous != null) {
+                columns = previous;
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * @return the public getter of the field, case insensitive like {@link JavaUtils#runGetter(Object, String)}, or null
+     */
+    private static Method findGetter(Class<?> type, String fieldName) {
+        final String getterName = "get" + fieldName.toLowerCase(Locale.ROOT);
+        for (Method method : type.getMethods()) {
+            if (method.getParameterTypes().length == 0 && method.getName().toLowerCase(Locale.ROOT).equals(getterName)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private static class Column {
+        final String name;
+        final Field field;
+        final Method getter;
+
+        Column(Field field, Method getter) {
+            this.name = field.getName();
+            this.field = field;
+            this.getter = getter;
+        }
+
+        /**
+         * @throws IllegalStateException if the getter threw or the field could not be read: a failing row is not exported as empty cells
+         */
+        Object get(Object row) {
+            try {
+                return getter != null ? getter.invoke(row) : field.get(row);
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException("Could not read column " + name + " of " + row.getClass().getName(), e.getCause());
+            } catch (ReflectiveOperationException | IllegalArgumentException e) {
+                throw new IllegalStateException("Could not read column " + name + " of " + row.getClass().getName(), e);
+            }
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,368 @@
+package com.portalp.utils;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Counters and latency histograms of the utils hot paths ({@code AndroidUtils.writeFile}/{@code readFile}, {@link JavaUtils#runGetter(Object, String)},
+ * {@code QrCodeUtils.encodeAsQRCode}, the {@code SharedPrefsUtils} reads and writes...).
+ * <p>
+ * Disabled by default: {@link Timer#start()} then returns 0 without reading the clock, and {@link Timer#stop(long)} returns immediately, so that the
+ * hooks cost a volatile read. Once {@link #setEnabled(boolean) enabled}:
+ * <ul>
+ * <li>the counts and sums are striped {@link LongAdder}s, cheap under contention (plain {@link AtomicLong}s where the runtime lacks them: Android
+ * before API 24),</li>
+ * <li>the latencies go to fixed-memory log-linear histograms (4 linear buckets per power of two of nanoseconds, about 20% precision), from
+ * which the percentiles are read,</li>
+ * <li>{@link #startPeriodicExport(File, long)} appends a {@link #snapshot()} to a local file, to be attached to the field logs.</li>
+ * </ul>
+ * Usage:
+ * <pre>
+ * private static final UtilsMetrics.Timer TIMER = UtilsMetrics.timer("Foo.bar");
+ *
+ * final long start = TIMER.start();
+ * try {
+ *     ...
+ * } finally {
+ *     TIMER.stop(start);
+ * }
+ * </pre>
+ */
+public final class UtilsMetrics {
+
+    private static final String TAG = UtilsMetrics.class.getSimpleName();
+    private static final Logger LOGGER = Logger.getLogger(TAG);
+
+    private static final boolean HAS_LONG_ADDER = isClassPresent("java.util.concurrent.atomic.LongAdder");
+
+    private static final ConcurrentHashMap<String, Timer> TIMERS = new ConcurrentHashMap<>();
+    private static volatile boolean enabled;
+
+    private static ScheduledExecutorService exportExecutor;
+    private static ScheduledFuture<?> exportTask;
+
+    private UtilsMetrics() {
+    }
+
+    public static void setEnabled(boolean enabled) {
+        UtilsMetrics.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param name the timer name, e.g. "AndroidUtils.writeFile"
+     * @return the timer of the given name, created on first call
+     */
+    public static Timer timer(String name) {
+        Timer timer = TIMERS.get(name);
+        if (timer == null) {
+            timer = new Timer(name);
+            final Timer previous = TIMERS.putIfAbsent(name, timer);
+            if (previous != null) {
+                timer = previous;
+            }
+        }
+        return timer;
+    }
+
+    /**
+     * Resets all the timers.
+     */
+    public static void reset() {
+        for (Timer timer : TIMERS.values()) {
+            timer.reset();
+        }
+    }
+
+    //region Counters
+    private interface Counter {
+        void add(long value);
+
+        long sum();
+
+        void reset();
+    }
+
+    private static Counter newCounter() {
+        return HAS_LONG_ADDER ? new LongAdderCounter() : new AtomicCounter();
+    }
+
+    /**
+     * Only loaded when {@link LongAdder} is available.
+     */
+    private static final class LongAdderCounter implements Counter {
+        private final LongAdder adder = new LongAdder();
+
+        @Override
+        public void add(long value) {
+            adder.add(value);
+        }
+
+        @Override
+        public long sum() {
+            return adder.sum();
+        }
+
+        @Override
+        public void reset() {
+            adder.reset();
+        }
+    }
+
+    private static final class AtomicCounter implements Counter {
+        private final AtomicLong value = new AtomicLong();
+
+        @Override
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        @Override
+        public long sum() {
+            return value.get();
+        }
+
+        @Override
+        public void reset() {
+            value.set(0);
+        }
+    }
+
+    private static boolean isClassPresent(String className) {
+        try {
+            Class.forName(className, false, UtilsMetrics.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+    //endregion
+
+    //region Timer
+    /**
+     * Call counter and latency histogram.
+     */
+    public static final class Timer {
+
+        // Values 0 to 3 ns have their own bucket, then 4 buckets per power of two up to 2^62 ns
+        private static final int SUB_BUCKETS = 4;
+        private static final int BUCKETS = 256;
+
+        private final String name;
+        private final Counter count = newCounter();
+        private final Counter totalNanos = newCounter();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return the start time to pass to {@link #stop(long)}, or 0 if the metrics are disabled
+         */
+        public long start() {
+            return enabled ? System.nanoTime() : 0;
+        }
+
+        /**
+         * Records the duration since the given start, if it was recorded.
+         *
+         * @param start the value returned by {@link #start()}
+         */
+        public void stop(long start) {
+            if (start == 0) {
+                return;
+            }
+            record(System.nanoTime() - start);
+        }
+
+        public void record(long nanos) {
+            if (nanos < 0) {
+                nanos = 0;
+            }
+            count.add(1);
+            totalNanos.add(nanos);
+            histogram.incrementAndGet(bucketOf(nanos));
+            long max = maxNanos.get();
+            // A concurrent greater max wins
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getMeanNanos() {
+            final long c = count.sum();
+            return c == 0 ? 0 : totalNanos.sum() / c;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the upper bound of the bucket holding the given percentile, 0 if nothing was recorded
+         */
+        public long getPercentileNanos(double percentile) {
+            final long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = histogram.get(i);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            final long max = maxNanos.get();
+            final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+            long cumulated = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                cumulated += counts[i];
+                if (cumulated >= rank) {
+                    return Math.min(upperBoundOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        void reset() {
+            count.reset();
+            totalNanos.reset();
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram.set(i, 0);
+            }
+            maxNanos.set(0);
+        }
+
+        static int bucketOf(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) nanos;
+            }
+            final int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            final int sub = (int) (nanos >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+            return (exponent - 1) * SUB_BUCKETS + sub;
+        }
+
+        static long upperBoundOf(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            final int exponent = bucket / SUB_BUCKETS + 1;
+            final long sub = bucket % SUB_BUCKETS;
+            return ((SUB_BUCKETS + sub + 1) << (exponent - 2)) - 1;
+        }
+
+        @Override
+        public String toString() {
+            return name + " count=" + getCount()
+                    + " mean=" + formatMs(getMeanNanos())
+                    + " p50=" + formatMs(getPercentileNanos(50))
+                    + " p99=" + formatMs(getPercentileNanos(99))
+                    + " max=" + formatMs(getMaxNanos());
+        }
+
+        private static String formatMs(long nanos) {
+            return String.format(Locale.US, "%.3fms", nanos / 1e6);
+        }
+    }
+    //endregion
+
+    //region Export
+    /**
+     * @return one line per timer which recorded something
+     */
+    public static String snapshot() {
+        final List<String> lines = new ArrayList<>();
+        for (Timer timer : TIMERS.values()) {
+            if (timer.getCount() > 0) {
+                lines.add(timer.toString());
+            }
+        }
+        Collections.sort(lines);
+        final StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends a dated {@link #snapshot()} to the given file.
+     *
+     * @throws IOException if the file could not be written
+     */
+    public static void exportTo(File file) throws IOException {
+        final String snapshot = snapshot();
+        if (snapshot.isEmpty()) {
+            return;
+        }
+        final String date = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).format(new Date());
+        try (Writer writer = new FileWriter(file, true)) {
+            writer.write("# " + date + '\n');
+            writer.write(snapshot);
+        }
+    }
+
+    /**
+     * Enables the metrics and appends a snapshot to the given file every period, on a background thread.
+     *
+     * @param file     the export file, e.g. in the app logs directory
+     * @param periodMs the export period
+     */
+    public static synchronized void startPeriodicExport(final File file, long periodMs) {
+        stopPeriodicExport();
+        setEnabled(true);
+        if (exportExecutor == null) {
+            exportExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        exportTask = exportExecutor.scheduleAtFixedRate(() -> {
+            try {
+                exportTo(file);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "periodic export failed", e);
+            }
+        }, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stopPeriodicExport() {
+        if (exportTask != null) {
+            exportTask.cancel(false);
+            exportTask = null;
+        }
+    }
+    //endregion
+}